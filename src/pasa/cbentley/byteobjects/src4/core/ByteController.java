@@ -19,7 +19,6 @@ import pasa.cbentley.core.src4.memory.IMemFreeable;
 import pasa.cbentley.core.src4.memory.IMemory;
 import pasa.cbentley.core.src4.stator.IStatorable;
 import pasa.cbentley.core.src4.structs.IntBuffer;
-import pasa.cbentley.core.src4.structs.synch.MutexSignal;
 import pasa.cbentley.core.src4.thread.IBProgessable;
 import pasa.cbentley.core.src4.utils.BitUtils;
 import pasa.cbentley.core.src4.utils.IntUtils;
@@ -228,8 +227,45 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
 
    private int                   flags;
 
+   /**
+    * {@link IBOAgentManaged#AGENT_OFFSET_05_CLASS_ID2} to agent slots
+    */
+   private ByteControllerIndex   indexClass;
+
+   /**
+    * {@link IBOAgentManaged#AGENT_OFFSET_06_GSOURCE_ID2} to agent slots
+    */
+   private ByteControllerIndex   indexGroup;
+
+   /**
+    * {@link IBOAgentManaged#AGENT_OFFSET_08_REF_ID2} to agent slots
+    */
+   private ByteControllerIndex   indexRef;
+
+   /**
+    * {@link ByteObjectManaged#memoryMemSrcIndex} and {@link ByteObjectManaged#memoryMemSrcID} to agent slots.
+    * <br>
+    * Key is computed by {@link ByteController#getKeySource(int, int)}
+    */
+   private ByteControllerIndex   indexSource;
+
    private boolean               isDataSourceLoad;
 
+   /**
+    * True once the {@link ByteController#journal} was checked for an interrupted save
+    */
+   private boolean               isJournalRecovered;
+
+   /**
+    * When not null, {@link ByteController#saveAgents()} is transactional
+    */
+   private ByteControllerJournal journal;
+
+   /**
+    * Number of threads used by {@link ByteController#loadAllAgents()}. 0 for a sequential load
+    */
+   private int                   loadThreads;
+
    /**
     * Every {@link ByteController} has a root agent which.
     * <br>
@@ -238,6 +274,21 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     */
    private ByteObjectManaged     rootAgent;
 
+   /**
+    * Writes gid/iid blocks for {@link ByteController#saveAgentsAsync()}. Lazily created
+    */
+   private ByteControllerSaver   saver;
+
+   /**
+    * Slabs of {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}. Lazily created
+    */
+   private ByteControllerArena   arena;
+
+   /**
+    * Evicts clean agents when loaded agents exceed a number of bytes. Lazily created
+    */
+   private ByteControllerBudget  budget;
+
    public ByteController(BOCtx mod) {
       this(mod, null, mod.getByteControllerFactory().getTechDefault());
    }
@@ -409,7 +460,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       if (agent.memoryAgentIndex == -1) {
          addAgentToListAgent(agent);
       }
-
+      indexAgent(agent);
    }
 
    /**
@@ -506,6 +557,10 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
    }
 
    public int countAgentsClass(int field, int value) {
+      ByteControllerIndex index = getIndex(field, 2);
+      if (index != null) {
+         return findSlots(index, field, 2, value).length;
+      }
       int total = 0;
       for (int i = 0; i < agentsRefArray.length; i++) {
          if (agentsRefArray[i] != null && agentsRefArray[i].get2(field) == value) {
@@ -573,6 +628,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_3_SINGLE}
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_1_MULTIPLE}
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_2_EXPULSE}
+    * <li> {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}
     * <br>
     * <br>
     * The goal is to reach
@@ -594,7 +650,10 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
          //agent must be controlled by this
          throw new IllegalStateException();
       }
-      if (block.isAlone()) {
+      if (getExpansionPolicy() == MEMC_EX_POLICY_4_ARENA) {
+         //alone agents too. their array may be a slab
+         getArena().move(block, bytesIncr, position);
+      } else if (block.isAlone()) {
          //case of agent in its own array without a MEMC header. it occurs when agent has been expulsed once.
          block.increaseArray(bytesIncr, position);
       } else {
@@ -609,6 +668,28 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       }
    }
 
+   /**
+    * Expands by bytesIncr at position and by headroom at positionHeadroom with a single move in the arena.
+    * <br>
+    * Headroom is only asked with {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}.
+    * @param block agent must belong to this {@link ByteController}.
+    * @param bytesIncr
+    * @param position offset loaded position
+    * @param headroom
+    * @param positionHeadroom offset loaded position. Not before position
+    */
+   void expandMemory(ByteObjectManaged block, int bytesIncr, int position, int headroom, int positionHeadroom) {
+      if (getExpansionPolicy() != MEMC_EX_POLICY_4_ARENA) {
+         throw new IllegalStateException("headroom needs the arena policy");
+      }
+      block.setSaveFlag(false);
+      if (block.memoryAgentIndex == -1) {
+         //agent must be controlled by this
+         throw new IllegalStateException();
+      }
+      getArena().move(block, bytesIncr, position, headroom, positionHeadroom);
+   }
+
    private void expandSingle(ByteObjectManaged block, int bytesIncr, int position) {
       int gid = block.memoryMemSrcIndex;
       int iid = block.memoryMemSrcID;
@@ -638,6 +719,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       System.arraycopy(source, offset, arrayExpusled, 0, len);
       block.setMemory(arrayExpusled);
       block.setOffset(0);
+      block.isView = false;
       block.setFlagNoVersion(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_2_EXPULSED, true);
 
    }
@@ -700,6 +782,15 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
    }
 
    public ByteObjectManaged[] findAgents(int offset, int size, int value) {
+      ByteControllerIndex indexField = getIndex(offset, size);
+      if (indexField != null) {
+         int[] slots = findSlots(indexField, offset, size, value);
+         ByteObjectManaged[] ar = new ByteObjectManaged[slots.length];
+         for (int i = 0; i < ar.length; i++) {
+            ar[i] = agentsRefArray[slots[i]];
+         }
+         return ar;
+      }
       IntBuffer buf = new IntBuffer(boc.getUC());
       for (int i = 0; i < agentsRefArray.length; i++) {
          ByteObjectManaged bom = agentsRefArray[i];
@@ -717,6 +808,32 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       return ar;
    }
 
+   /**
+    * Slots of the agents whose field value is value, in increasing order.
+    * <br>
+    * <br>
+    * The indexes are exact, agents reindex themselves when a key field is written, see {@link ByteController#reindexAgent(ByteObjectManaged)}.
+    * <br>
+    * A slot whose agent no longer matches means a key was written directly in the array of the agent.
+    * All agents are then indexed again and the look up is done again.
+    * @param index
+    * @param field
+    * @param size
+    * @param value
+    * @return
+    */
+   private synchronized int[] findSlots(ByteControllerIndex index, int field, int size, int value) {
+      int[] slots = index.findAll(value);
+      for (int i = 0; i < slots.length; i++) {
+         ByteObjectManaged bom = agentsRefArray[slots[i]];
+         if (bom == null || bom.getValue(field, size) != value) {
+            reindexAgents();
+            return index.findAll(value);
+         }
+      }
+      return slots;
+   }
+
    public ByteObjectManaged[] findAgentsClass(int classID) {
       return findAgents(AGENT_OFFSET_05_CLASS_ID2, 2, classID);
    }
@@ -734,22 +851,168 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * Method from {@link IMemory}
     */
    public void freeMemory() {
-      // TODO Auto-generated method stub
+      //agents not used since the last sweep
+      getBudget().sweep(0, true, 1);
+   }
 
+   /**
+    * Unloads the blocks whose agents are neither modified nor in use.
+    * <br>
+    * Their agents reload on the next call of {@link ByteObjectManaged#methodStarts()}.
+    */
+   public void freeMemoryDataUnload() {
+      getBudget().sweep(0, false, 1);
    }
 
    /**
-    * Unload all data
+    * Called when the MemorySource can free the byte array
+    * <br>
+    * Releases the enveloppes of the blocks whose agents all have their own array.
+    */
+   public synchronized void freeMemorySource() {
+      for (int gid = 0; gid < bcse.length; gid++) {
+         for (int iid = 0; iid < bcse[gid].length; iid++) {
+            if (bcse[gid][iid] != null) {
+               ByteObjectManaged[] a0 = getSourceAgents(gid, iid);
+               boolean isUsed = false;
+               for (int i = 0; i < a0.length; i++) {
+                  if (a0[i].getMemory() == bcse[gid][iid].getMemory()) {
+                     isUsed = true;
+                     break;
+                  }
+               }
+               if (!isUsed) {
+                  bcse[gid][iid] = null;
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Number of bytes of the agents whose data is loaded
+    * @return
     */
-   public synchronized void freeMemoryDataUnload() {
+   synchronized int getBytesLoaded() {
+      int bytes = 0;
+      for (int i = 0; i < agentsRefArray.length; i++) {
+         ByteObjectManaged bom = agentsRefArray[i];
+         if (bom != null && !bom.isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
+            bytes += bom.getLength();
+         }
+      }
+      return bytes;
+   }
+
+   synchronized int getBlockBytes(int gid, int iid) {
+      ByteObjectManaged[] a0 = getSourceAgents(gid, iid);
+      int bytes = 0;
+      for (int i = 0; i < a0.length; i++) {
+         bytes += a0[i].getLength();
+      }
+      return bytes;
+   }
+
+   synchronized int getNumGroups() {
+      return bcse.length;
+   }
+
+   synchronized int getNumInstances(int gid) {
+      return bcse[gid].length;
+   }
 
+   synchronized boolean isBlockLoaded(int gid, int iid) {
+      return iid < bcse[gid].length && bcse[gid][iid] != null;
    }
 
    /**
-    * Called when the MemorySource can free the byte array
+    * Clears the reference bits of the agents of the block
+    * @param gid
+    * @param iid
+    * @return true if one agent was accessed since the last clear
     */
-   public void freeMemorySource() {
+   synchronized boolean clearBlockAccessed(int gid, int iid) {
+      ByteObjectManaged[] a0 = getSourceAgents(gid, iid);
+      boolean isAccessed = false;
+      for (int i = 0; i < a0.length; i++) {
+         isAccessed |= a0[i].isAccessed;
+         a0[i].isAccessed = false;
+      }
+      return isAccessed;
+   }
 
+   /**
+    * Unloads the agents of the block when none is modified or in use.
+    * <br>
+    * Agents keep their header and reload on the next call of {@link ByteObjectManaged#methodStarts()}.
+    * @param gid
+    * @param iid
+    * @return true when the block was unloaded
+    */
+   synchronized boolean evictBlock(int gid, int iid) {
+      if (bcse[gid][iid] == null) {
+         return false;
+      }
+      ByteObjectManaged[] a0 = getSourceAgents(gid, iid);
+      int numLocked = 0;
+      try {
+         for (int i = 0; i < a0.length; i++) {
+            if (!a0[i].tryLockEvict()) {
+               return false;
+            }
+            numLocked++;
+         }
+         for (int i = 0; i < a0.length; i++) {
+            if (!a0[i].isClean()) {
+               return false;
+            }
+         }
+         for (int i = 0; i < a0.length; i++) {
+            unloadAgent(a0[i]);
+         }
+         bcse[gid][iid] = null;
+         return true;
+      } finally {
+         for (int i = 0; i < numLocked; i++) {
+            a0[i].unlockEvict();
+         }
+      }
+   }
+
+   /**
+    * Replaces the data of the agent with its header only.
+    * @param bomClearing
+    */
+   private void unloadAgent(ByteObjectManaged bomClearing) {
+      bomClearing.setFlag(AGENT_OFFSET_01_FLAG_1, AGENT_FLAG_CTRL_7_DATA_UNLOADED, true);
+      int headerLen = bomClearing.get2(AGENT_OFFSET_13_LEN_HEADER2);
+      //we need to keep the header otherwise we can't read the UNLOADED flag 
+      ByteObjectManaged bom = boc.getByteObjectManagedFactory().createByteObject(headerLen);
+      bom.burnHeader(bomClearing);
+      bomClearing.memoryClearSub();
+      bomClearing.swapData(bom.data, 0);
+      bomClearing.setSyncroFlag(SYNCRO_FLAG_1_UNLOADED, true);
+   }
+
+   /**
+    * Gives the data of the agent read from the {@link MemorySource} to the unloaded agent and initializes it.
+    * @param bom
+    * @param read
+    * @param isCorrupted
+    */
+   private void reloadAgent(ByteObjectManaged bom, ByteObjectManaged read, boolean isCorrupted) {
+      bom.swapData(read.data, read.index);
+      bom.isView = read.isView;
+      if (bom.get1(AGENT_OFFSET_03_FLAGZ_1) != 0) {
+         bom.set1(AGENT_OFFSET_03_FLAGZ_1, 0);
+      }
+      if (isCorrupted) {
+         dataCorrupted(bom);
+      }
+      bom.initMe();
+      bom.setSaveFlag(true);
+      bom.isAccessed = true;
+      bom.setSyncroFlag(SYNCRO_FLAG_1_UNLOADED, false);
    }
 
    public ByteObjectManaged getAgent(int redID) {
@@ -785,20 +1048,16 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
    public ByteObjectManaged getAgentFromGroupInstance(int gid, int iid, ByteObjectManaged tech, int safetyIntID) {
       ByteObjectManaged bom = null;
       if (bcse[gid][iid] == null) {
-         MemorySource ms = dataSources[gid];
-         byte[] d = ms.load(iid);
-         loadAgents(d, gid, iid);
+         loadAgents(dataSources[gid], gid, iid);
       }
       //try to find it
       ByteObjectManaged bc = bcse[gid][iid];
       if (bc != null) {
-         for (int i = 0; i < agentsRefArray.length; i++) {
-            if (agentsRefArray[i] != null) {
-               if (agentsRefArray[i].memoryMemSrcIndex == gid && agentsRefArray[i].memoryMemSrcID == iid) {
-                  if (agentsRefArray[i].getIDClass() == tech.getIDClass()) {
-                     return agentsRefArray[i];
-                  }
-               }
+         int[] slots = findSlotsSource(gid, iid);
+         for (int i = 0; i < slots.length; i++) {
+            ByteObjectManaged agent = agentsRefArray[slots[i]];
+            if (agent.getIDClass() == tech.getIDClass()) {
+               return agent;
             }
          }
       }
@@ -1004,13 +1263,18 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       if (bc.getType() == IBOTypesBOC.TYPE_036_BYTE_CONTROLLER) {
          int num = bc.get3(MEMC_OFFSET_05_NUM_AGENTS3);
          agents = new ByteObjectManaged[num];
-         int offset = MEMC_BASIC_SIZE;
+         //enveloppe may be a view inside a bigger array
+         int offset = bc.getByteObjectOffset() + MEMC_BASIC_SIZE;
          int acount = 0;
          for (int j = 0; j < num; j++) {
             //create tech with ByteController, which will be used to initialize inside the factory
             //this constructor check magic word
             ByteObjectManaged fin = new ByteObjectManaged(boc, this, array, offset);
-            fin.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE, true);
+            //agents of a view share its memory. the flag is reset once loaded, so a view is not written for it
+            fin.isView = bc.isView;
+            if (!fin.isView) {
+               fin.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE, true);
+            }
             fin.memoryByteArrayIndex = j;
             agents[acount] = fin;
             offset += fin.getLength();
@@ -1040,6 +1304,14 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * @return
     */
    public ByteObjectManaged getBOMLive(int field, int size, int value) {
+      ByteControllerIndex index = getIndex(field, size);
+      if (index != null) {
+         int[] slots = findSlots(index, field, size, value);
+         if (slots.length == 0) {
+            return null;
+         }
+         return agentsRefArray[slots[0]];
+      }
       for (int i = 0; i < agentsRefArray.length; i++) {
          if (agentsRefArray[i] != null) {
             if (agentsRefArray[i].getValue(field, size) == value) {
@@ -1098,6 +1370,23 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       return total;
    }
 
+   /**
+    * CRC32C of all the bytes of the agent.
+    * <br>
+    * The agent is put in incremental checksum mode. Only the blocks written since the previous save are hashed again.
+    * <br>
+    * An agent with its own checksum trailer is hashed in full, {@link ByteObject#getCheckSum()} skips that trailer.
+    * @param agent
+    * @return
+    */
+   private int getChecksumAgent(ByteObjectManaged agent) {
+      if (agent.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+         return ByteObjectChecksum.crc32c(agent.getMemory(), agent.getOffset(), agent.getLength());
+      }
+      agent.setChecksumIncremental(true);
+      return agent.getCheckSum();
+   }
+
    /**
     * Create a {@link ByteController} header for the {@link ByteObjectManaged}.
     * and write the agent to it
@@ -1111,11 +1400,39 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       for (int j = 0; j < numAgents; j++) {
          totalSize += a0[j].getLength();
       }
+      boolean isChecksum = hasFlag(MEMC_OFFSET_09_FLAG1, MEMC_FLAG_5_CHECKSUM);
+      if (isChecksum) {
+         //left in the buffer after the last agent
+         totalSize += CHECKSUM_BYTE_SIZE;
+      }
       ByteObjectManaged ctrl = boc.getByteControllerFactory().getEnveloppe(totalSize, numAgents);
+      if (isChecksum) {
+         ctrl.setFlag(MEMC_OFFSET_09_FLAG1, MEMC_FLAG_5_CHECKSUM, true);
+      }
+      int crcAgents = 0;
+      int lenAgents = 0;
       for (int j = 0; j < numAgents; j++) {
          ByteObjectManaged agent = a0[j];
          agent.serializeToCheck(this);
-         ctrl.copyAppendData(agent.getByteArrayCopy(), agent.getOffset(), agent.getLength());
+         int len = agent.getLength();
+         //the bytes hashed are the bytes copied
+         agent.dataLockRead();
+         try {
+            if (isChecksum) {
+               crcAgents = ByteObjectChecksum.combine(crcAgents, getChecksumAgent(agent), len);
+            }
+            ctrl.copyAppendData(agent.getMemory(), agent.getOffset(), len);
+         } finally {
+            agent.dataUnLockRead();
+         }
+         lenAgents += len;
+      }
+      if (isChecksum) {
+         //header is final once all agents are appended
+         byte[] datac = ctrl.getByteObjectData();
+         int crc = ByteObjectChecksum.crc32c(datac, 0, MEMC_BASIC_SIZE);
+         crc = ByteObjectChecksum.combine(crc, crcAgents, lenAgents);
+         IntUtils.writeIntBE(datac, MEMC_BASIC_SIZE + lenAgents, crc);
       }
       return ctrl;
    }
@@ -1148,6 +1465,49 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       return total;
    }
 
+   /**
+    * Thread pool writing blocks for {@link ByteController#saveAgentsAsync()}
+    * @return
+    */
+   public synchronized ByteControllerSaver getSaver() {
+      if (saver == null) {
+         saver = new ByteControllerSaver(boc, this);
+      }
+      return saver;
+   }
+
+   /**
+    * Clock of the blocks unloaded when the loaded agents go over {@link ByteController#setMemoryBudget(int)}
+    * @return
+    */
+   public synchronized ByteControllerBudget getBudget() {
+      if (budget == null) {
+         budget = new ByteControllerBudget(boc, this);
+      }
+      return budget;
+   }
+
+   /**
+    * Maximum number of bytes of loaded agents. Beyond, agents not used recently and not modified are unloaded
+    * until the next call of one of their methods.
+    * @param maxBytes 0 for no limit
+    */
+   public void setMemoryBudget(int maxBytes) {
+      getBudget().setMaxBytes(maxBytes);
+      getBudget().enforce();
+   }
+
+   /**
+    * Slabs shared by the agents of the {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA} expansion policy
+    * @return
+    */
+   public synchronized ByteControllerArena getArena() {
+      if (arena == null) {
+         arena = new ByteControllerArena(boc);
+      }
+      return arena;
+   }
+
    public int getExpansionPolicy() {
       return get1(MEMC_OFFSET_02_MODE1);
    }
@@ -1226,22 +1586,59 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * @return
     */
    public ByteObjectManaged[] getSourceAgents(int sid, int iid) {
-      IntBuffer ib = new IntBuffer(boc.getUC(), 5);
-      for (int i = 0; i < agentsRefArray.length; i++) {
-         if (agentsRefArray[i] != null) {
-            if (agentsRefArray[i].memoryMemSrcIndex == sid && agentsRefArray[i].memoryMemSrcID == iid) {
-               ib.addInt(i);
-            }
-         }
-      }
-      ByteObjectManaged[] os = new ByteObjectManaged[ib.getSize()];
+      int[] slots = findSlotsSource(sid, iid);
+      ByteObjectManaged[] os = new ByteObjectManaged[slots.length];
       for (int i = 0; i < os.length; i++) {
-         int index = ib.get(i);
-         os[i] = agentsRefArray[index];
+         os[i] = agentsRefArray[slots[i]];
       }
       return os;
    }
 
+   /**
+    * Slots of the agents located at gid/iid, in increasing order.
+    * <br>
+    * Stale slots are checked as in {@link ByteController#findSlots(ByteControllerIndex, int, int, int)}
+    * @param gid
+    * @param iid
+    * @return
+    */
+   private synchronized int[] findSlotsSource(int gid, int iid) {
+      int key = getKeySource(gid, iid);
+      int[] slots = indexSource.findAll(key);
+      for (int i = 0; i < slots.length; i++) {
+         ByteObjectManaged bom = agentsRefArray[slots[i]];
+         if (bom == null || bom.memoryMemSrcIndex != gid || bom.memoryMemSrcID != iid) {
+            reindexAgents();
+            return indexSource.findAll(key);
+         }
+      }
+      return slots;
+   }
+
+   /**
+    * Index of the header field. null when the field is not indexed
+    * @param field
+    * @param size
+    * @return
+    */
+   private ByteControllerIndex getIndex(int field, int size) {
+      if (size != 2) {
+         return null;
+      }
+      if (field == AGENT_OFFSET_08_REF_ID2) {
+         return indexRef;
+      } else if (field == AGENT_OFFSET_05_CLASS_ID2) {
+         return indexClass;
+      } else if (field == AGENT_OFFSET_06_GSOURCE_ID2) {
+         return indexGroup;
+      }
+      return null;
+   }
+
+   private int getKeySource(int gid, int iid) {
+      return (gid << 16) | (iid & 0xFFFF);
+   }
+
    public boolean hasMagicCtrl(byte[] data, int offset) {
       return IntUtils.readIntBE(data, offset + MEMC_OFFSET_00_MAGICWORD4) == MEMC_MAGIC_WORD;
    }
@@ -1272,6 +1669,24 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       agentsRefArray = new ByteObjectManaged[arStart];
       dataSources = new MemorySource[arrayBuffer];
       bcse = new ByteObjectManaged[arrayBuffer][];
+      indexRef = new ByteControllerIndex(boc);
+      indexClass = new ByteControllerIndex(boc);
+      indexGroup = new ByteControllerIndex(boc);
+      indexSource = new ByteControllerIndex(boc);
+   }
+
+   /**
+    * Puts the agent in the look up indexes under its current keys.
+    * <br>
+    * Agent must be listed.
+    * @param agent
+    */
+   private synchronized void indexAgent(ByteObjectManaged agent) {
+      int slot = agent.memoryAgentIndex;
+      indexRef.put(slot, agent.get2(AGENT_OFFSET_08_REF_ID2));
+      indexClass.put(slot, agent.get2(AGENT_OFFSET_05_CLASS_ID2));
+      indexGroup.put(slot, agent.get2(AGENT_OFFSET_06_GSOURCE_ID2));
+      indexSource.put(slot, getKeySource(agent.memoryMemSrcIndex, agent.memoryMemSrcID));
    }
 
    /**
@@ -1299,7 +1714,8 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
          throw new IllegalArgumentException("Could not create object for " + tech.toString());
       }
       fin.initMe();
-      fin.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_7_SAVED, true);
+      //same bytes as the source
+      fin.setSaveFlag(true);
 
       return fin;
    }
@@ -1317,12 +1733,40 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       fin.memoryAgentIndex = tech.memoryAgentIndex;
       fin.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_4_INSTANTIATED, true);
       agentsRefArray[tech.memoryAgentIndex] = fin;
+      indexAgent(fin);
       //update the reference states
       if (tech.isRoot() && tech == rootAgent) {
          rootAgent = fin;
       }
    }
 
+   /**
+    * Checks the CRC32C written after the last agent of an enveloppe.
+    * <br>
+    * <br>
+    * True when the enveloppe was saved without {@link IBOByteControler#MEMC_FLAG_5_CHECKSUM}
+    * @param bc enveloppe read from a {@link MemorySource}
+    * @return
+    */
+   boolean isChecksumValid(ByteObjectManaged bc) {
+      if (!bc.hasFlag(MEMC_OFFSET_09_FLAG1, MEMC_FLAG_5_CHECKSUM)) {
+         return true;
+      }
+      byte[] array = bc.getByteObjectData();
+      int start = bc.getByteObjectOffset();
+      int num = bc.get3(MEMC_OFFSET_05_NUM_AGENTS3);
+      int offset = start + MEMC_BASIC_SIZE;
+      for (int j = 0; j < num; j++) {
+         //agent length
+         offset += IntUtils.readIntBE(array, offset + AGENT_OFFSET_16_LEN4);
+      }
+      if (offset < start || offset + CHECKSUM_BYTE_SIZE > array.length) {
+         return false;
+      }
+      int crc = ByteObjectChecksum.crc32c(array, start, offset - start);
+      return crc == IntUtils.readIntBE(array, offset);
+   }
+
    private boolean isInstantiated(ByteObjectManaged bom) {
       return bom.hasFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_4_INSTANTIATED);
    }
@@ -1438,74 +1882,142 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * @param srcIndex
     * @param iid
     */
-   private void loadAgents(byte[] rootData, int srcIndex, int iid) {
-      if (rootData != null && rootData.length != 0) {
-         ByteObjectManaged bc = new ByteObjectManaged(boc, rootData);
-         //data must be wrapped around a ByteController enveloppe.
-         if (bc.getType() != IBOTypesBOC.TYPE_036_BYTE_CONTROLLER) {
-
-            //#debug
-            toDLog().pMemoryWarn("Problem loading MemorySource Data " + srcIndex, this, ByteController.class, "loadAgents");
-
-            //when its not, create that enveloppe and tries to read the agents
-            int numAgents = 1;
-            bc = boc.getByteControllerFactory().getEnveloppe(MEMC_BASIC_SIZE, numAgents);
-            bc.copyAppendData(rootData, 0, rootData.length);
-
-         }
-         bc.memoryMemSrcIndex = srcIndex;
-         bc.memoryMemSrcID = iid;
-         bc.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE, true);
-         bcse[srcIndex][iid] = bc;
-
+   private void loadAgents(MemorySource ms, int srcIndex, int iid) {
+      ByteObjectManaged bc = loadEnveloppe(ms, srcIndex, iid);
+      if (bc != null) {
+         //check before any flag is modified
+         boolean isCorrupted = !isChecksumValid(bc);
          ByteObjectManaged[] agents = getAgentsFromBC(bc);
+         loadAgents(bc, agents, isCorrupted, srcIndex, iid);
+      }
+   }
 
-         //case of a memory reload
-         if (hasFlag(MEMC_OFFSET_10_FLAGZ1, MEMC_FLAGZ_1_MEMORYCLEARED)) {
-            //reload must be matched with existing agents how? with the 
-            for (int i = 0; i < agents.length; i++) {
-               int pos = agents[i].memoryByteArrayIndex;
-               for (int j = 0; j < agentsRefArray.length; j++) {
-                  ByteObjectManaged bom = agentsRefArray[i];
-                  if (bom.memoryMemSrcIndex == srcIndex) {
-                     if (bom.memoryMemSrcID == iid) {
-                        if (bom.memoryByteArrayIndex == pos) {
-                           //found live agent
-                           bom.data = agents[i].data;
-                           bom.index = agents[i].index;
-                           bom.set1(AGENT_OFFSET_03_FLAGZ_1, 0);
-                           agents[i] = null;
-                           break;
-                        }
-                     }
-                  }
+   /**
+    * Registers the agents read from the enveloppe bc of gid/iid.
+    * <br>
+    * <br>
+    * Only called by the thread loading the {@link ByteController}.
+    * @param bc enveloppe returned by {@link ByteController#loadEnveloppe(byte[], int)}
+    * @param agents agents of bc returned by {@link ByteController#getAgentsFromBC(ByteObjectManaged)}
+    * @param isCorrupted checksum of bc did not match before any of its flag was modified
+    * @param srcIndex
+    * @param iid
+    */
+   void loadAgents(ByteObjectManaged bc, ByteObjectManaged[] agents, boolean isCorrupted, int srcIndex, int iid) {
+      //#mdebug
+      if (isCorrupted) {
+         toDLog().pMemoryWarn("Checksum mismatch for MemorySource Data " + srcIndex + " iid=" + iid, this, ByteController.class, "loadAgents");
+      }
+      //#enddebug
+      bc.memoryMemSrcIndex = srcIndex;
+      bc.memoryMemSrcID = iid;
+      if (!bc.hasFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE)) {
+         bc.setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE, true);
+      }
+      bcse[srcIndex][iid] = bc;
+
+      //case of a memory reload. agents of the block are matched with their reference id
+      ByteObjectManaged[] lives = getSourceAgents(srcIndex, iid);
+      for (int i = 0; i < agents.length && lives.length != 0; i++) {
+         int ref = agents[i].get2(AGENT_OFFSET_08_REF_ID2);
+         for (int j = 0; j < lives.length; j++) {
+            ByteObjectManaged bom = lives[j];
+            if (bom.get2(AGENT_OFFSET_08_REF_ID2) == ref) {
+               if (bom.isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
+                  reloadAgent(bom, agents[i], isCorrupted);
                }
+               //the live agent is kept
+               agents[i] = null;
+               break;
             }
          }
-         //once all loaded.
-         for (int j = 0; j < agents.length; j++) {
-            if (agents[j] != null) {
-               agents[j].memoryMemSrcIndex = srcIndex;
-               agents[j].memoryMemSrcID = iid;
+      }
+      //once all loaded.
+      for (int j = 0; j < agents.length; j++) {
+         if (agents[j] != null) {
+            agents[j].memoryMemSrcIndex = srcIndex;
+            agents[j].memoryMemSrcID = iid;
+            if (agents[j].get1(AGENT_OFFSET_03_FLAGZ_1) != 0) {
                agents[j].set1(AGENT_OFFSET_03_FLAGZ_1, 0); //reset the flag
-               addAgent(agents[j]);
-               //the agent has been added without being instantiated. which must be done when going out
             }
+            if (isCorrupted) {
+               dataCorrupted(agents[j]);
+            }
+            addAgent(agents[j]);
+            //the agent has been added without being instantiated. which must be done when going out
          }
-         //once all loaded. reverse them by reading data
-         for (int j = 0; j < agents.length; j++) {
-            ByteObjectManaged tech = agents[j];
-            if (tech != null) {
-               //check if tech has not been
-               int ref = tech.memoryAgentIndex;
-               if (agentsRefArray[ref] == tech) {
-                  //factory instantiates the class only.
-                  ByteObjectManaged fin = instancetiate(tech);
-                  agents[j] = fin;
-               }
+      }
+      //once all loaded. reverse them by reading data
+      for (int j = 0; j < agents.length; j++) {
+         ByteObjectManaged tech = agents[j];
+         if (tech != null) {
+            //check if tech has not been
+            int ref = tech.memoryAgentIndex;
+            if (agentsRefArray[ref] == tech) {
+               //factory instantiates the class only.
+               ByteObjectManaged fin = instancetiate(tech);
+               agents[j] = fin;
             }
          }
       }
+      if (budget != null) {
+         budget.enforce();
+      }
+   }
+
+   /**
+    * Wraps the bytes read from a {@link MemorySource} in a {@link IBOByteControler} enveloppe.
+    * <br>
+    * <br>
+    * Does not modify the {@link ByteController}. May be called by loading threads.
+    * @param rootData
+    * @param srcIndex
+    * @return null when there is no data
+    */
+   ByteObjectManaged loadEnveloppe(byte[] rootData, int srcIndex) {
+      if (rootData == null || rootData.length == 0) {
+         return null;
+      }
+      ByteObjectManaged bc = new ByteObjectManaged(boc, rootData);
+      //data must be wrapped around a ByteController enveloppe.
+      if (bc.getType() != IBOTypesBOC.TYPE_036_BYTE_CONTROLLER) {
+
+         //#debug
+         toDLog().pMemoryWarn("Problem loading MemorySource Data " + srcIndex, this, ByteController.class, "loadEnveloppe");
+
+         //when its not, create that enveloppe and tries to read the agents
+         int numAgents = 1;
+         bc = boc.getByteControllerFactory().getEnveloppe(MEMC_BASIC_SIZE, numAgents);
+         bc.copyAppendData(rootData, 0, rootData.length);
+
+      }
+      return bc;
+   }
+
+   /**
+    * Enveloppe of the gid/iid block of ms.
+    * <br>
+    * <br>
+    * Uses the view of {@link MemorySource#loadView(int)} when the {@link MemorySource} provides one,
+    * the bytes of {@link MemorySource#load(int)} otherwise.
+    * <br>
+    * Does not modify the {@link ByteController}.
+    * @param ms
+    * @param srcIndex
+    * @param iid
+    * @return null when there is no data
+    */
+   ByteObjectManaged loadEnveloppe(MemorySource ms, int srcIndex, int iid) {
+      ByteObjectManaged view = ms.loadView(iid);
+      if (view != null) {
+         if (view.getType() == IBOTypesBOC.TYPE_036_BYTE_CONTROLLER) {
+            //the memory of the source is copied on the first write
+            view.isView = true;
+            return view;
+         }
+         //not an enveloppe. wrap a copy of the bytes
+      }
+      return loadEnveloppe(ms.load(iid), srcIndex);
    }
 
    /**
@@ -1546,8 +2058,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
          throw new IllegalArgumentException("bad iid=" + iid + " with gid=" + gid);
       }
       if (bcse[gid][iid] == null) {
-         byte[] d = ms.load(iid);
-         loadAgents(d, gid, iid);
+         loadAgents(ms, gid, iid);
       }
    }
 
@@ -1558,6 +2069,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * @return true if it could create it.
     */
    private void loadDefaultDataSource(int gid) {
+      recoverJournal();
       MemorySource ms = dataSources[gid];
       if (ms == null) {
          return;
@@ -1610,6 +2122,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * @throws IllegalArgumentException when iid is not a valid
     */
    private void loadDefaultDataSource(int gid, int iid) {
+      recoverJournal();
       MemorySource ms = dataSources[gid];
       if (ms == null) {
          return;
@@ -1629,44 +2142,78 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * Calling this method resets
     */
    private void loadDefaultDataSources() {
-      for (int i = 0; i < dataSources.length; i++) {
-         loadDefaultDataSource(i);
+      recoverJournal();
+      if (loadThreads > 0) {
+         loadDefaultDataSourcesParallel();
+      } else {
+         for (int i = 0; i < dataSources.length; i++) {
+            loadDefaultDataSource(i);
+         }
       }
       isDataSourceLoad = true;
    }
 
+   /**
+    * Same as the sequential load, with {@link MemorySource#load(int)} and the parsing done by a {@link ByteControllerLoader}.
+    * <br>
+    * Blocks are registered in the sequential order.
+    */
+   private void loadDefaultDataSourcesParallel() {
+      IntBuffer gids = new IntBuffer(boc.getUC());
+      IntBuffer iids = new IntBuffer(boc.getUC());
+      for (int gid = 0; gid < dataSources.length; gid++) {
+         MemorySource ms = dataSources[gid];
+         if (ms != null) {
+            int[] ids = initCheckGID(gid, ms);
+            for (int j = 0; j < ids.length; j++) {
+               int iid = ids[j];
+               if (iid < 0 || iid >= bcse[gid].length) {
+                  throw new IllegalArgumentException("bad iid=" + iid + " with gid=" + gid);
+               }
+               if (bcse[gid][iid] == null) {
+                  gids.addInt(gid);
+                  iids.addInt(iid);
+               }
+            }
+         }
+      }
+      int num = gids.getSize();
+      int[] ga = new int[num];
+      int[] ia = new int[num];
+      for (int i = 0; i < num; i++) {
+         ga[i] = gids.get(i);
+         ia[i] = iids.get(i);
+      }
+      new ByteControllerLoader(boc, this, ga, ia, loadThreads).load();
+   }
+
    /**
     * Save Agents to their memory Source.
     * <br>
     * Clear the byte arrays.
     * 
     * <br>
-    * Should it be synchronized?
+    * The save runs outside the monitor of the controller, since the {@link ByteControllerSaver} threads need it
+    * to look up the agents of a block. Only the clearing is synchronized.
     */
-   public synchronized void memoryClear() {
+   public void memoryClear() {
       saveAgents();
-      for (int i = 0; i < agentsRefArray.length; i++) {
-         if (agentsRefArray[i] != null) {
-            //only clear it if it is linked from a Memory Source
-            if (agentsRefArray[i].hasFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE)) {
-               ByteObjectManaged bomClearing = agentsRefArray[i];
-               bomClearing.setFlag(AGENT_OFFSET_01_FLAG_1, AGENT_FLAG_CTRL_7_DATA_UNLOADED, true);
-               int headerLen = bomClearing.get2(AGENT_OFFSET_13_LEN_HEADER2);
-               //we need to keep the header otherwise we can't read the UNLOADED flag 
-               ByteObjectManaged bom = boc.getByteObjectManagedFactory().createByteObject(headerLen);
-               bom.burnHeader(bomClearing);
-               bomClearing.memoryClearSub();
-               bomClearing.data = bom.data;
-               bomClearing.index = 0;
+      synchronized (this) {
+         for (int i = 0; i < agentsRefArray.length; i++) {
+            if (agentsRefArray[i] != null) {
+               //only clear it if it is linked from a Memory Source
+               if (agentsRefArray[i].hasFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_3_FROM_SOURCE)) {
+                  unloadAgent(agentsRefArray[i]);
+               }
             }
          }
-      }
-      for (int i = 0; i < bcse.length; i++) {
-         for (int j = 0; j < bcse[i].length; j++) {
-            bcse[i][j] = null;
+         for (int i = 0; i < bcse.length; i++) {
+            for (int j = 0; j < bcse[i].length; j++) {
+               bcse[i][j] = null;
+            }
          }
+         setFlag(MEMC_OFFSET_10_FLAGZ1, MEMC_FLAGZ_1_MEMORYCLEARED, true);
       }
-      setFlag(MEMC_OFFSET_10_FLAGZ1, MEMC_FLAGZ_1_MEMORYCLEARED, true);
    }
 
    /**
@@ -1723,15 +2270,50 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       }
       int gid = agent.memoryMemSrcIndex;
       int iid = agent.memoryMemSrcID;
-      if (bcse.length > gid) { //when possible
-         if (bcse[gid].length > iid) { //when possible
-            if (bcse[gid][iid] == null) {
-               loadData(gid, iid, dataSources[gid]);
+      synchronized (this) {
+         if (bcse.length > gid) { //when possible
+            if (bcse[gid].length > iid) { //when possible
+               if (bcse[gid][iid] == null) {
+                  //reloads the unloaded agents of the block
+                  loadData(gid, iid, dataSources[gid]);
+               }
             }
          }
       }
-      //ask the agent to reload itself
-      agent.initMe();
+      if (agent.isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
+         throw new IllegalStateException("Agent not found in its MemorySource block gid=" + gid + " iid=" + iid);
+      }
+   }
+
+   /**
+    * Updates the look up indexes of the agent.
+    * <br>
+    * <br>
+    * Called by the agent when a setter writes {@link IBOAgentManaged#AGENT_OFFSET_08_REF_ID2}, {@link IBOAgentManaged#AGENT_OFFSET_05_CLASS_ID2}
+    * or {@link IBOAgentManaged#AGENT_OFFSET_06_GSOURCE_ID2}, so the indexes stay exact.
+    * <br>
+    * Must be called by code that writes those fields directly in the array of the agent.
+    * @param bom
+    */
+   public void reindexAgent(ByteObjectManaged bom) {
+      if (bom.byteCon == this && bom.memoryAgentIndex != -1 && agentsRefArray[bom.memoryAgentIndex] == bom) {
+         indexAgent(bom);
+      }
+   }
+
+   /**
+    * Rebuilds the look up indexes from the agent array.
+    */
+   public synchronized void reindexAgents() {
+      indexRef.clear();
+      indexClass.clear();
+      indexGroup.clear();
+      indexSource.clear();
+      for (int i = 0; i < agentsRefArray.length; i++) {
+         if (agentsRefArray[i] != null) {
+            indexAgent(agentsRefArray[i]);
+         }
+      }
    }
 
    /**
@@ -1740,6 +2322,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     */
    public void removeAgent(ByteObjectManaged bom) {
       if (bom.byteCon == this) {
+         unindexAgent(bom.memoryAgentIndex);
          bom.byteCon = null;
          agentsRefArray[bom.memoryAgentIndex] = null;
          bom.memoryMemSrcID = -1;
@@ -1781,24 +2364,7 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     */
    public void saveAgent(int[] stats, ByteObjectManaged bom) {
       if (isSerializationNeeded(bom)) {
-         int idSource = bom.memoryMemSrcIndex;
-         int idInstance = bom.memoryMemSrcID;
-         //
-         ByteObjectManaged[] a0 = getSourceAgents(idSource, idInstance);
-         ByteObjectManaged ctrl = getByteController(a0);
-         byte[] datac = ctrl.getByteObjectData();
-         stats[1] += datac.length;
-         //#mdebug
-         if (idSource >= dataSources.length) {
-            toDLog().pMemory("gid is not index to a datasource :" + idSource, this, ByteController.class, "saveAgent");
-         }
-         //#enddebug
-         dataSources[idSource].save(datac, 0, datac.length, idInstance);
-         for (int j = 0; j < a0.length; j++) {
-            ByteObjectManaged agent = a0[j];
-            agent.setSaveFlag(true);//flag agent as saved
-            stats[0]++;
-         }
+         saveBlock(stats, bom.memoryMemSrcIndex, bom.memoryMemSrcID, getSourceAgents(bom.memoryMemSrcIndex, bom.memoryMemSrcID));
       }
    }
 
@@ -1824,37 +2390,220 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * When a source point is loaded, all the agents are loaded in memory, therefore all agents must be written
     * back even if only one agent from that source point was modified.
     * 
+    * <br>
+    * <br>
+    * Waits for the handle of {@link ByteController#saveAgentsAsync()}. The calling thread must hold neither the lock of an agent
+    * nor the monitor of the controller.
+    * <br>
+    * The first exception thrown while writing a block is thrown again once all blocks are processed.
     * @return array with 2 values. first value is the number of agents saved and then the number of bytes written.
     */
    public int[] saveAgents() {
-      //how do we make sure cached agents are what they are in other threads?
-      //lock the agents, each thread increase a shared counter?
-      //some statistics
-      int[] stats = new int[] { 0, 0 };
-      IntBuffer waitingOn = new IntBuffer(getUCtx());
-      if (dataSources.length != 0) {
-         for (int i = 0; i < agentsRefArray.length; i++) {
-            ByteObjectManaged bom = agentsRefArray[i];
-            if (bom != null) {
-               //agent is currently being written to or read by another thread
-               if (bom.isSyncroFlag(SYNCRO_FLAG_2_LOCKED)) {
-                  waitingOn.addInt(i);
-                  saveThread(bom, stats);
-                  //go to next agent
-                  continue;
-               } else {
-                  bom.dataLock();
+      if (journal != null) {
+         return saveAgentsJournal();
+      }
+      ByteControllerSaveHandle handle = saveAgentsAsync();
+      int[] stats = handle.waitFor();
+      RuntimeException e = handle.getError();
+      if (e != null) {
+         throw e;
+      }
+      return stats;
+   }
+
+   /**
+    * Transactional save of the blocks with modified agents.
+    * <br>
+    * <br>
+    * The agents of those blocks are locked in slot order and their enveloppes built.
+    * The enveloppes are committed to the {@link ByteControllerJournal} and then written to their {@link MemorySource}.
+    * The journal is cleared last.
+    * <br>
+    * Blocks without modified agents are neither serialized nor written.
+    * <br>
+    * A journal left by an interrupted save is recovered first, so that the commit does not overwrite it.
+    * @return number of agents saved and number of bytes written
+    */
+   private int[] saveAgentsJournal() {
+      recoverJournal();
+      ByteControllerJournal journal = this.journal;
+      int[] stats = new int[2];
+      int[] keys = getDirtyBlocks();
+      if (keys.length == 0) {
+         return stats;
+      }
+      ByteObjectManaged[][] blocks = new ByteObjectManaged[keys.length][];
+      int numAgents = 0;
+      for (int i = 0; i < keys.length; i++) {
+         blocks[i] = getSourceAgents(keys[i] >>> 16, keys[i] & 0xFFFF);
+         numAgents += blocks[i].length;
+      }
+      //one lock order for all blocks
+      ByteObjectManaged[] locks = new ByteObjectManaged[numAgents];
+      int count = 0;
+      for (int i = 0; i < blocks.length; i++) {
+         for (int j = 0; j < blocks[i].length; j++) {
+            ByteObjectManaged bom = blocks[i][j];
+            int k = count++;
+            while (k > 0 && locks[k - 1].memoryAgentIndex > bom.memoryAgentIndex) {
+               locks[k] = locks[k - 1];
+               k--;
+            }
+            locks[k] = bom;
+         }
+      }
+      synchronized (journal) {
+         int numLocked = 0;
+         try {
+            for (int i = 0; i < locks.length; i++) {
+               locks[i].dataLock();
+               numLocked++;
+            }
+            int[] gids = new int[keys.length];
+            int[] iids = new int[keys.length];
+            byte[][] datas = new byte[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+               gids[i] = keys[i] >>> 16;
+               iids[i] = keys[i] & 0xFFFF;
+               datas[i] = getByteController(blocks[i]).getByteObjectData();
+            }
+            journal.commit(gids, iids, datas);
+            for (int i = 0; i < keys.length; i++) {
+               dataSources[gids[i]].save(datas[i], 0, datas[i].length, iids[i]);
+               stats[1] += datas[i].length;
+               for (int j = 0; j < blocks[i].length; j++) {
+                  blocks[i][j].setSaveFlag(true);
+                  stats[0]++;
+               }
+            }
+            journal.clear();
+         } finally {
+            for (int i = 0; i < numLocked; i++) {
+               locks[i].dataUnLock();
+            }
+         }
+      }
+      return stats;
+   }
+
+   /**
+    * Keys of the gid/iid blocks with at least one modified agent, as computed by {@link ByteController#getKeySource(int, int)}
+    * @return
+    */
+   private int[] getDirtyBlocks() {
+      IntBuffer blocks = new IntBuffer(boc.getUC());
+      for (int i = 0; i < agentsRefArray.length; i++) {
+         ByteObjectManaged bom = agentsRefArray[i];
+         if (bom != null && isSerializationNeeded(bom)) {
+            int key = getKeySource(bom.memoryMemSrcIndex, bom.memoryMemSrcID);
+            boolean isFound = false;
+            for (int j = 0; j < blocks.getSize(); j++) {
+               if (blocks.get(j) == key) {
+                  isFound = true;
+                  break;
                }
-               saveAgent(stats, bom);
-               bom.dataUnLock();
+            }
+            if (!isFound) {
+               blocks.addInt(key);
             }
          }
-         //now wait for all saveThreads to complete
-         if (waitingOn.getSize() != 0) {
+      }
+      int[] keys = new int[blocks.getSize()];
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = blocks.get(i);
+      }
+      return keys;
+   }
+
+   /**
+    * Writes again the blocks of a save interrupted after its journal commit. Discards an uncommitted journal.
+    * <br>
+    * Done once, before agents are loaded. Does nothing without journal.
+    * @return number of blocks written
+    */
+   public synchronized int recoverJournal() {
+      if (journal == null || isJournalRecovered) {
+         return 0;
+      }
+      isJournalRecovered = true;
+      return journal.recover(dataSources);
+   }
 
+   /**
+    * Submits the gid/iid blocks with modified agents to the {@link ByteControllerSaver} and returns without waiting.
+    * <br>
+    * <br>
+    * Each block is written once, whatever the number of its modified agents.
+    * Agents locked by another thread are written once that thread releases them.
+    * <br>
+    * <br>
+    * @return handle aggregating the numbers of each {@link MemorySource}
+    */
+   public ByteControllerSaveHandle saveAgentsAsync() {
+      ByteControllerSaveHandle handle = new ByteControllerSaveHandle(boc, dataSources.length);
+      if (dataSources.length != 0) {
+         int[] keys = getDirtyBlocks();
+         for (int i = 0; i < keys.length; i++) {
+            getSaver().submit(keys[i] >>> 16, keys[i] & 0xFFFF, handle);
+         }
+      }
+      handle.seal();
+      return handle;
+   }
+
+   /**
+    * Writes the agents of the gid/iid block inside a {@link IBOByteControler} enveloppe.
+    * @param stats number of agents and bytes are added
+    * @param gid
+    * @param iid
+    * @param a0 agents of the block
+    */
+   private void saveBlock(int[] stats, int gid, int iid, ByteObjectManaged[] a0) {
+      ByteObjectManaged ctrl = getByteController(a0);
+      byte[] datac = ctrl.getByteObjectData();
+      stats[1] += datac.length;
+      //#mdebug
+      if (gid >= dataSources.length) {
+         toDLog().pMemory("gid is not index to a datasource :" + gid, this, ByteController.class, "saveBlock");
+      }
+      //#enddebug
+      dataSources[gid].save(datac, 0, datac.length, iid);
+      for (int j = 0; j < a0.length; j++) {
+         ByteObjectManaged agent = a0[j];
+         agent.setSaveFlag(true);//flag agent as saved
+         stats[0]++;
+      }
+   }
+
+   /**
+    * Locks the agents of the block in slot order, writes the block if one of them is still modified and unlocks them.
+    * <br>
+    * <br>
+    * Called by the {@link ByteControllerSaver} threads.
+    * @param stats
+    * @param gid
+    * @param iid
+    */
+   void saveBlockLocked(int[] stats, int gid, int iid) {
+      ByteObjectManaged[] a0 = getSourceAgents(gid, iid);
+      int numLocked = 0;
+      try {
+         boolean isNeeded = false;
+         for (int i = 0; i < a0.length; i++) {
+            //waits when another thread holds the lock
+            a0[i].dataLock();
+            numLocked++;
+            isNeeded |= isSerializationNeeded(a0[i]);
+         }
+         //a coalesced or previous save may have written it already
+         if (isNeeded) {
+            saveBlock(stats, gid, iid, a0);
+         }
+      } finally {
+         for (int i = 0; i < numLocked; i++) {
+            a0[i].dataUnLock();
          }
       }
-      return stats;
    }
 
    protected void saveMultiples(int[] stats, int i, ByteObjectManaged[] a0) {
@@ -1884,31 +2633,6 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       saveToMemorySource(stats, i, arZero);
    }
 
-   private void saveThread(final ByteObjectManaged ag, final int[] stats) {
-      new Thread(new Runnable() {
-
-         public void run() {
-
-            MutexSignal se = new MutexSignal(boc.getUC());
-            //asks the the agent to notify this waiting thread
-            synchronized (se) {
-               //wait for the thread to finish
-               ag.setSemaphoreLock(se);
-               try {
-                  se.acquire();
-               } catch (InterruptedException e) {
-                  e.printStackTrace();
-               }
-               //when finished waiting we lock the object
-               ag.dataLock();
-               //now we want to go back to the calling thread to notify it that o
-               //our agent is ready to be saved
-            }
-            saveAgent(stats, ag);
-         }
-      }).start();
-   }
-
    /**
     * 
     * @param stats int array with stats
@@ -2007,6 +2731,20 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
    public void setAgentData(ByteObjectManaged bom, int size) {
       bom.data = new byte[size];
       bom.index = 0;
+      bom.isView = false;
+   }
+
+   /**
+    * When true, each save to a {@link MemorySource} writes a CRC32C of the enveloppe, checked on load.
+    * <br>
+    * Agents are put in incremental checksum mode on their first save. Only the blocks modified since
+    * the previous save are hashed again. The CRC of the enveloppe combines the CRC of its header with the CRCs of the agents.
+    * <br>
+    * See {@link IBOByteControler#MEMC_FLAG_5_CHECKSUM}
+    * @param v
+    */
+   public void setChecksum(boolean v) {
+      setFlag(MEMC_OFFSET_09_FLAG1, MEMC_FLAG_5_CHECKSUM, v);
    }
 
    public void setDefaultSourceID(int i) {
@@ -2014,6 +2752,33 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
 
    }
 
+   /**
+    * Number of threads fetching and parsing {@link MemorySource} blocks when all agents are loaded.
+    * <br>
+    * 0, the default, loads sequentially.
+    * @param loadThreads
+    */
+   public void setLoadThreads(int loadThreads) {
+      this.loadThreads = loadThreads;
+   }
+
+   /**
+    * Makes {@link ByteController#saveAgents()} transactional with a {@link ByteControllerJournal} written to the given source.
+    * <br>
+    * The journal is recovered before the next load of agents. null to go back to direct saves.
+    * <br>
+    * {@link ByteController#saveAgentsAsync()} and {@link ByteController#saveAgent(ByteObjectManaged)} still write directly.
+    * @param ms
+    */
+   public synchronized void setJournal(MemorySource ms) {
+      if (ms == null) {
+         journal = null;
+      } else {
+         journal = new ByteControllerJournal(boc, ms);
+         isJournalRecovered = false;
+      }
+   }
+
    public void setExpansionPolicy(int policy) {
       set1(MEMC_OFFSET_03_POLICY_MODE1, policy);
    }
@@ -2045,8 +2810,12 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
     * <br>
     * @param shiftSize
     */
-   public void shiftReferenceIDs(int shiftSize) {
-
+   public synchronized void shiftReferenceIDs(int shiftSize) {
+      for (int i = 0; i < agentsRefArray.length; i++) {
+         if (agentsRefArray[i] != null) {
+            agentsRefArray[i].incrementREFID(shiftSize);
+         }
+      }
    }
 
    /**
@@ -2143,6 +2912,16 @@ public class ByteController extends ByteObjectManaged implements IBOByteControle
       toStringMemoryStats(dc.newLevel());
    }
 
+   private synchronized void unindexAgent(int slot) {
+      if (slot == -1) {
+         return;
+      }
+      indexRef.remove(slot);
+      indexClass.remove(slot);
+      indexGroup.remove(slot);
+      indexSource.remove(slot);
+   }
+
    private void toStringDataSources(Dctx sb) {
       int i = 0;
       sb.append("=>Listing Datasources #" + dataSources.length);
@@ -0,0 +1,151 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.core.interfaces.IBOAgentManaged;
+import pasa.cbentley.byteobjects.src4.core.interfaces.IBOByteControler;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Slab allocator of {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}.
+ * <br>
+ * <br>
+ * An expanding agent is moved to a region carved at the end of the current slab. Small agents share slabs,
+ * large agents get their own array.
+ * <br>
+ * Regions are never reused. A slab is reclaimed by the garbage collector once no agent points to it.
+ * <br>
+ * <br>
+ * The agent asks for headroom in {@link IBOAgentManaged#AGENT_OFFSET_15_LEN_BUFFER_3} when it grows,
+ * see {@link ByteObjectManaged#expandDataArray(int, int)}. Moves thus become rarer as the agent grows.
+ * The growth and the headroom are done by the same move.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerArena extends ObjectBoc implements IBOAgentManaged {
+
+   public static final int SLAB_SIZE_DEFAULT = 1 << 16;
+
+   /**
+    * Bytes given to agents
+    */
+   private int             bytesAllocated;
+
+   private int             numMoves;
+
+   private int             numSlabs;
+
+   private byte[]          slab;
+
+   private int             slabSize;
+
+   private int             slabUsed;
+
+   public ByteControllerArena(BOCtx boc) {
+      this(boc, SLAB_SIZE_DEFAULT);
+   }
+
+   public ByteControllerArena(BOCtx boc, int slabSize) {
+      super(boc);
+      this.slabSize = slabSize;
+   }
+
+   public synchronized int getBytesAllocated() {
+      return bytesAllocated;
+   }
+
+   public synchronized int getNumMoves() {
+      return numMoves;
+   }
+
+   public synchronized int getNumSlabs() {
+      return numSlabs;
+   }
+
+   /**
+    * Moves the agent to a new region with incr bytes inserted or removed at position.
+    * <br>
+    * Inserted bytes are zero. The agent is flagged {@link IBOAgentManaged#AGENT_FLAGZ_CTRL_2_EXPULSED}.
+    * @param block
+    * @param incr
+    * @param position loaded position in the current array of the agent
+    */
+   public void move(ByteObjectManaged block, int incr, int position) {
+      move(block, incr, position, 0, position);
+   }
+
+   /**
+    * Moves the agent to a new region with incr bytes inserted or removed at position and headroom bytes
+    * inserted at positionHeadroom, in a single copy.
+    * <br>
+    * Inserted bytes are zero. The agent is flagged {@link IBOAgentManaged#AGENT_FLAGZ_CTRL_2_EXPULSED}.
+    * @param block
+    * @param incr
+    * @param position loaded position in the current array of the agent
+    * @param headroom 0 when incr is negative
+    * @param positionHeadroom loaded position in the current array of the agent. Not before position
+    */
+   public synchronized void move(ByteObjectManaged block, int incr, int position, int headroom, int positionHeadroom) {
+      byte[] src = block.getMemory();
+      int offset = block.getOffset();
+      int len = block.getLength();
+      int newLen = len + incr + headroom;
+      byte[] dest = null;
+      int destOffset = 0;
+      if (newLen > (slabSize >> 2)) {
+         dest = new byte[newLen];
+      } else {
+         if (slab == null || slabUsed + newLen > slab.length) {
+            slab = new byte[slabSize];
+            slabUsed = 0;
+            numSlabs++;
+         }
+         dest = slab;
+         destOffset = slabUsed;
+         slabUsed += newLen;
+      }
+      int head = position - offset;
+      System.arraycopy(src, offset, dest, destOffset, head);
+      if (incr >= 0) {
+         int mid = positionHeadroom - position;
+         System.arraycopy(src, position, dest, destOffset + head + incr, mid);
+         System.arraycopy(src, positionHeadroom, dest, destOffset + head + incr + mid + headroom, len - head - mid);
+      } else {
+         System.arraycopy(src, position - incr, dest, destOffset + head, len - head + incr);
+      }
+      block.setMemory(dest);
+      block.setOffset(destOffset);
+      block.setFlagNoVersion(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_2_EXPULSED, true);
+      bytesAllocated += newLen;
+      numMoves++;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerArena.class, 129);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("slabSize", slabSize);
+      dc.appendVarWithSpace("slabUsed", slabUsed);
+      dc.appendVarWithSpace("numSlabs", numSlabs);
+      dc.appendVarWithSpace("numMoves", numMoves);
+      dc.appendVarWithSpace("bytesAllocated", bytesAllocated);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerArena.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
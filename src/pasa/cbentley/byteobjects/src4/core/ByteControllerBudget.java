@@ -0,0 +1,164 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.sources.MemorySource;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Memory budget of a {@link ByteController}.
+ * <br>
+ * <br>
+ * When the agents loaded from {@link MemorySource}s exceed {@link ByteControllerBudget#getMaxBytes()},
+ * gid/iid blocks are unloaded with the CLOCK algorithm.
+ * <li> The hand goes over the blocks in gid/iid order
+ * <li> A block with an agent accessed since the last turn gets a second chance. Its reference bits are cleared
+ * <li> Otherwise the block is unloaded if none of its agents is modified or in use
+ * <br>
+ * <br>
+ * Unloaded agents keep their header. {@link ByteObjectManaged#methodStarts()} reloads their block from the {@link MemorySource}.
+ * <br>
+ * The budget is checked each time a block is loaded.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerBudget extends ObjectBoc {
+
+   private ByteController bc;
+
+   private int            bytesEvicted;
+
+   private int            handGid;
+
+   private int            handIid;
+
+   private int            maxBytes;
+
+   private int            numEvictions;
+
+   public ByteControllerBudget(BOCtx boc, ByteController bc) {
+      super(boc);
+      this.bc = bc;
+   }
+
+   private void advance() {
+      handIid++;
+      if (handIid >= bc.getNumInstances(handGid)) {
+         handIid = 0;
+         handGid++;
+         if (handGid >= bc.getNumGroups()) {
+            handGid = 0;
+         }
+      }
+   }
+
+   /**
+    * Unloads blocks until the loaded agents fit {@link ByteControllerBudget#getMaxBytes()}
+    * @return number of blocks unloaded
+    */
+   public int enforce() {
+      if (maxBytes <= 0) {
+         return 0;
+      }
+      return sweep(maxBytes, true, 2);
+   }
+
+   public int getBytesEvicted() {
+      return bytesEvicted;
+   }
+
+   public int getMaxBytes() {
+      return maxBytes;
+   }
+
+   public int getNumEvictions() {
+      return numEvictions;
+   }
+
+   /**
+    *
+    * @param maxBytes 0 for no limit
+    */
+   public void setMaxBytes(int maxBytes) {
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * Moves the hand over the blocks and unloads them until the loaded agents are below target.
+    * @param target number of bytes
+    * @param isSecondChance when false, accessed blocks are unloaded too
+    * @param turns maximum number of turns of the hand
+    * @return number of blocks unloaded
+    */
+   public int sweep(int target, boolean isSecondChance, int turns) {
+      //same lock as the loads of the ByteController
+      synchronized (bc) {
+         return sweepLocked(target, isSecondChance, turns);
+      }
+   }
+
+   private int sweepLocked(int target, boolean isSecondChance, int turns) {
+      int numGroups = bc.getNumGroups();
+      int numBlocks = 0;
+      for (int gid = 0; gid < numGroups; gid++) {
+         numBlocks += bc.getNumInstances(gid);
+      }
+      if (numBlocks == 0) {
+         return 0;
+      }
+      if (handGid >= numGroups || handIid >= bc.getNumInstances(handGid)) {
+         handGid = 0;
+         handIid = 0;
+      }
+      int loaded = bc.getBytesLoaded();
+      int count = 0;
+      for (int step = 0; step < numBlocks * turns && loaded > target; step++) {
+         int gid = handGid;
+         int iid = handIid;
+         advance();
+         if (!bc.isBlockLoaded(gid, iid)) {
+            continue;
+         }
+         if (isSecondChance && bc.clearBlockAccessed(gid, iid)) {
+            continue;
+         }
+         int bytes = bc.getBlockBytes(gid, iid);
+         if (bc.evictBlock(gid, iid)) {
+            loaded -= bytes;
+            bytesEvicted += bytes;
+            numEvictions++;
+            count++;
+         }
+      }
+      return count;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerBudget.class, 140);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("maxBytes", maxBytes);
+      dc.appendVarWithSpace("numEvictions", numEvictions);
+      dc.appendVarWithSpace("bytesEvicted", bytesEvicted);
+      dc.appendVarWithSpace("handGid", handGid);
+      dc.appendVarWithSpace("handIid", handIid);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerBudget.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
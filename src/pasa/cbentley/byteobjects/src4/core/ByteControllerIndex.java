@@ -0,0 +1,235 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Int hash index from a key to the agent slots of a {@link ByteController}.
+ * <br>
+ * <br>
+ * A slot is the {@link ByteObjectManaged#memoryAgentIndex}, i.e. the position in the agent array.
+ * Each slot has at most one key. Slots with the same key are chained.
+ * <br>
+ * <br>
+ * The index does not read agents. Callers must verify the agent of a slot still has the key.
+ * <br>
+ * <br>
+ * Iterate with
+ * <pre>
+ * for (int slot = index.find(key); slot != -1; slot = index.findNext(slot)) {
+ * }
+ * </pre>
+ * Not thread safe. The {@link ByteController} synchronizes.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerIndex extends ObjectBoc {
+
+   private int       count;
+
+   /**
+    * First slot of each bucket. -1 when empty
+    */
+   private int[]     heads;
+
+   /**
+    * True when the slot is in the index
+    */
+   private boolean[] isIn;
+
+   /**
+    * Key of each slot
+    */
+   private int[]     keys;
+
+   /**
+    * Next slot in the bucket chain. -1 at the end
+    */
+   private int[]     next;
+
+   public ByteControllerIndex(BOCtx boc) {
+      super(boc);
+      heads = new int[16];
+      keys = new int[16];
+      next = new int[16];
+      isIn = new boolean[16];
+      clearHeads();
+   }
+
+   private int bucket(int key, int numBuckets) {
+      int h = key * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & (numBuckets - 1);
+   }
+
+   /**
+    * Removes all slots
+    */
+   public void clear() {
+      clearHeads();
+      for (int i = 0; i < isIn.length; i++) {
+         isIn[i] = false;
+      }
+      count = 0;
+   }
+
+   private void clearHeads() {
+      for (int i = 0; i < heads.length; i++) {
+         heads[i] = -1;
+      }
+   }
+
+   /**
+    * First slot with key
+    * @param key
+    * @return -1 if none
+    */
+   public int find(int key) {
+      int slot = heads[bucket(key, heads.length)];
+      while (slot != -1 && keys[slot] != key) {
+         slot = next[slot];
+      }
+      return slot;
+   }
+
+   /**
+    * Next slot with the same key as slot
+    * @param slot a slot returned by {@link ByteControllerIndex#find(int)}
+    * @return -1 if none
+    */
+   public int findNext(int slot) {
+      int key = keys[slot];
+      slot = next[slot];
+      while (slot != -1 && keys[slot] != key) {
+         slot = next[slot];
+      }
+      return slot;
+   }
+
+   /**
+    * All slots with key, in increasing order
+    * @param key
+    * @return empty array if none
+    */
+   public int[] findAll(int key) {
+      int num = 0;
+      for (int slot = find(key); slot != -1; slot = findNext(slot)) {
+         num++;
+      }
+      int[] slots = new int[num];
+      int n = 0;
+      for (int slot = find(key); slot != -1; slot = findNext(slot)) {
+         //insertion sort. chains are short and mostly in decreasing order
+         int j = n - 1;
+         while (j >= 0 && slots[j] > slot) {
+            slots[j + 1] = slots[j];
+            j--;
+         }
+         slots[j + 1] = slot;
+         n++;
+      }
+      return slots;
+   }
+
+   public int getCount() {
+      return count;
+   }
+
+   /**
+    * Indexes slot with key. Replaces the previous key of that slot.
+    * @param slot
+    * @param key
+    */
+   public void put(int slot, int key) {
+      if (slot >= isIn.length) {
+         int size = isIn.length;
+         while (size <= slot) {
+            size = size << 1;
+         }
+         int[] nk = new int[size];
+         System.arraycopy(keys, 0, nk, 0, keys.length);
+         keys = nk;
+         int[] nn = new int[size];
+         System.arraycopy(next, 0, nn, 0, next.length);
+         next = nn;
+         boolean[] ni = new boolean[size];
+         System.arraycopy(isIn, 0, ni, 0, isIn.length);
+         isIn = ni;
+      }
+      if (isIn[slot]) {
+         if (keys[slot] == key) {
+            return;
+         }
+         remove(slot);
+      }
+      if ((count + 1) * 4 > heads.length * 3) {
+         rehash(heads.length << 1);
+      }
+      keys[slot] = key;
+      int b = bucket(key, heads.length);
+      next[slot] = heads[b];
+      heads[b] = slot;
+      isIn[slot] = true;
+      count++;
+   }
+
+   private void rehash(int numBuckets) {
+      heads = new int[numBuckets];
+      clearHeads();
+      for (int slot = 0; slot < isIn.length; slot++) {
+         if (isIn[slot]) {
+            int b = bucket(keys[slot], numBuckets);
+            next[slot] = heads[b];
+            heads[b] = slot;
+         }
+      }
+   }
+
+   /**
+    * Removes slot from the index. Does nothing if not indexed
+    * @param slot
+    */
+   public void remove(int slot) {
+      if (slot < 0 || slot >= isIn.length || !isIn[slot]) {
+         return;
+      }
+      int b = bucket(keys[slot], heads.length);
+      int s = heads[b];
+      if (s == slot) {
+         heads[b] = next[slot];
+      } else {
+         while (next[s] != slot) {
+            s = next[s];
+         }
+         next[s] = next[slot];
+      }
+      isIn[slot] = false;
+      count--;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerIndex.class, 200);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("count", count);
+      dc.appendVarWithSpace("numBuckets", heads.length);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerIndex.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -0,0 +1,182 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.sources.MemorySource;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.utils.IntUtils;
+
+/**
+ * Redo journal of the transactional save of a {@link ByteController}.
+ * <br>
+ * <br>
+ * The enveloppes of all the blocks of a save are first written in one go to the journal {@link MemorySource}.
+ * Only then are they written to their own {@link MemorySource}, after which the journal is cleared.
+ * <br>
+ * The journal is written with a single {@link MemorySource#save(byte[], int, int)}. Platform sources used as journal
+ * must make that call durable and atomic, typically by writing a temporary file, syncing it and renaming it.
+ * <br>
+ * <br>
+ * Layout
+ * <li> 4 bytes : {@link ByteControllerJournal#MAGIC}
+ * <li> 4 bytes : number of blocks
+ * <li> per block : 2 bytes gid, 2 bytes iid, 4 bytes length and the enveloppe
+ * <li> 4 bytes : CRC32C of all the previous bytes
+ * <br>
+ * <br>
+ * <b>Recovery</b>
+ * <br>
+ * A valid journal found on load belongs to a save that may have been interrupted after the journal was written.
+ * Its blocks are written again to their sources. Writing a block twice is harmless.
+ * <br>
+ * A journal that is not valid belongs to a save interrupted before its commit. The sources were not touched. It is discarded.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerJournal extends ObjectBoc {
+
+   public static final int MAGIC = 0x424A524E;
+
+   private MemorySource    ms;
+
+   private int             numDiscarded;
+
+   private int             numReplayed;
+
+   public ByteControllerJournal(BOCtx boc, MemorySource ms) {
+      super(boc);
+      this.ms = ms;
+   }
+
+   /**
+    * Empties the journal once all the blocks were written to their sources
+    */
+   public void clear() {
+      ms.save(new byte[0], 0, 0);
+   }
+
+   /**
+    * Writes the blocks to the journal. Once this method returns, the save is committed.
+    * @param gids
+    * @param iids
+    * @param datas enveloppe of each block
+    */
+   public void commit(int[] gids, int[] iids, byte[][] datas) {
+      int len = 8 + 4;
+      for (int i = 0; i < datas.length; i++) {
+         len += 8 + datas[i].length;
+      }
+      byte[] data = new byte[len];
+      IntUtils.writeIntBE(data, 0, MAGIC);
+      IntUtils.writeIntBE(data, 4, datas.length);
+      int offset = 8;
+      for (int i = 0; i < datas.length; i++) {
+         data[offset] = (byte) (gids[i] >> 8);
+         data[offset + 1] = (byte) gids[i];
+         data[offset + 2] = (byte) (iids[i] >> 8);
+         data[offset + 3] = (byte) iids[i];
+         IntUtils.writeIntBE(data, offset + 4, datas[i].length);
+         System.arraycopy(datas[i], 0, data, offset + 8, datas[i].length);
+         offset += 8 + datas[i].length;
+      }
+      IntUtils.writeIntBE(data, offset, ByteObjectChecksum.crc32c(data, 0, offset));
+      ms.save(data, 0, len);
+   }
+
+   public MemorySource getMemorySource() {
+      return ms;
+   }
+
+   public int getNumDiscarded() {
+      return numDiscarded;
+   }
+
+   public int getNumReplayed() {
+      return numReplayed;
+   }
+
+   /**
+    * Writes the blocks of a committed journal to their sources and clears the journal.
+    * <br>
+    * Discards a journal that was not committed.
+    * @param sources
+    * @return number of blocks written
+    */
+   public int recover(MemorySource[] sources) {
+      byte[] data = ms.load();
+      if (data == null || data.length == 0) {
+         return 0;
+      }
+      if (!isValid(data)) {
+         //#debug
+         toDLog().pMemoryWarn("Discarding uncommitted journal of " + data.length + " bytes", this, ByteControllerJournal.class, "recover");
+         numDiscarded++;
+         clear();
+         return 0;
+      }
+      int num = IntUtils.readIntBE(data, 4);
+      int offset = 8;
+      for (int i = 0; i < num; i++) {
+         int gid = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+         int iid = ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+         int len = IntUtils.readIntBE(data, offset + 4);
+         if (gid >= sources.length || sources[gid] == null) {
+            throw new IllegalArgumentException("journal block gid=" + gid + " has no source");
+         }
+         sources[gid].save(data, offset + 8, len, iid);
+         offset += 8 + len;
+      }
+      numReplayed += num;
+      clear();
+      return num;
+   }
+
+   private boolean isValid(byte[] data) {
+      if (data.length < 12 || IntUtils.readIntBE(data, 0) != MAGIC) {
+         return false;
+      }
+      int num = IntUtils.readIntBE(data, 4);
+      int offset = 8;
+      for (int i = 0; i < num; i++) {
+         if (offset + 8 > data.length - 4) {
+            return false;
+         }
+         int len = IntUtils.readIntBE(data, offset + 4);
+         if (len < 0 || offset + 8 + len > data.length - 4) {
+            return false;
+         }
+         offset += 8 + len;
+      }
+      if (offset != data.length - 4) {
+         return false;
+      }
+      return IntUtils.readIntBE(data, offset) == ByteObjectChecksum.crc32c(data, 0, offset);
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerJournal.class, 170);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+      dc.nlLvl(ms, "MemorySource");
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numReplayed", numReplayed);
+      dc.appendVarWithSpace("numDiscarded", numDiscarded);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerJournal.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -0,0 +1,239 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.sources.ITechMemorySource;
+import pasa.cbentley.byteobjects.src4.sources.MemorySource;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Loads gid/iid blocks of a {@link ByteController} with several threads.
+ * <br>
+ * <br>
+ * Threads fetch the enveloppes with {@link MemorySource#loadView(int)} or {@link MemorySource#load(int)} and parse their agents.
+ * <br>
+ * The calling thread registers the parsed agents in the order of the blocks given to the constructor,
+ * as soon as each block is ready. The agent array is thus the same as with a sequential load.
+ * <br>
+ * <br>
+ * A {@link MemorySource} without {@link ITechMemorySource#MS_FLAG_4_CONCURRENT_LOAD} is loaded by one thread at a time.
+ * Different {@link MemorySource}s are always loaded concurrently.
+ * <br>
+ * <br>
+ * One instance per load.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerLoader extends ObjectBoc implements Runnable, ITechMemorySource {
+
+   private ByteObjectManaged[][] agents;
+
+   private ByteController        bc;
+
+   private ByteObjectManaged[]   envs;
+
+   private Throwable[]           errors;
+
+   private int[]                 gids;
+
+   private int[]                 iids;
+
+   private boolean[]             isCorrupted;
+
+   private boolean[]             isDone;
+
+   private int                   maxThreads;
+
+   private int                   nextJob;
+
+   private int                   numThreads;
+
+   /**
+    *
+    * @param boc
+    * @param bc
+    * @param gids gid of each block
+    * @param iids iid of each block
+    * @param maxThreads
+    */
+   public ByteControllerLoader(BOCtx boc, ByteController bc, int[] gids, int[] iids, int maxThreads) {
+      super(boc);
+      this.bc = bc;
+      this.gids = gids;
+      this.iids = iids;
+      this.maxThreads = maxThreads;
+      int num = gids.length;
+      agents = new ByteObjectManaged[num][];
+      envs = new ByteObjectManaged[num];
+      errors = new Throwable[num];
+      isCorrupted = new boolean[num];
+      isDone = new boolean[num];
+   }
+
+   /**
+    * Creates the thread fetching blocks.
+    * @param r
+    * @return
+    */
+   protected Thread createThread(Runnable r) {
+      return new Thread(r, "ByteControllerLoader");
+   }
+
+   private void fetch(int job) {
+      int gid = gids[job];
+      int iid = iids[job];
+      try {
+         MemorySource ms = bc.dataSources[gid];
+         ByteObjectManaged env = null;
+         if (ms.hasMSFlag(MS_FLAG_4_CONCURRENT_LOAD)) {
+            env = bc.loadEnveloppe(ms, gid, iid);
+         } else {
+            synchronized (ms) {
+               env = bc.loadEnveloppe(ms, gid, iid);
+            }
+         }
+         if (env != null) {
+            isCorrupted[job] = !bc.isChecksumValid(env);
+            agents[job] = bc.getAgentsFromBC(env);
+            envs[job] = env;
+         }
+      } catch (Throwable e) {
+         //errors too, the calling thread waits for every block
+         errors[job] = e;
+      } finally {
+         synchronized (this) {
+            isDone[job] = true;
+            notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Fetches all blocks and registers them in order in the {@link ByteController}.
+    * <br>
+    * <br>
+    * Registration stops at the first block whose fetch or registration failed and the exception is thrown.
+    * Blocks already registered stay registered.
+    * <br>
+    * The fetch threads are stopped and joined before this method returns or throws.
+    */
+   public void load() {
+      int num = gids.length;
+      if (maxThreads <= 0 || num <= 1) {
+         for (int i = 0; i < num; i++) {
+            fetch(i);
+            register(i);
+         }
+         return;
+      }
+      int threads = Math.min(maxThreads, num);
+      Thread[] workers = new Thread[threads];
+      boolean isInterrupted = false;
+      try {
+         for (int i = 0; i < threads; i++) {
+            workers[i] = createThread(this);
+            synchronized (this) {
+               numThreads++;
+            }
+            workers[i].start();
+         }
+         for (int i = 0; i < num; i++) {
+            synchronized (this) {
+               while (!isDone[i]) {
+                  try {
+                     wait();
+                  } catch (InterruptedException e) {
+                     //the block is still needed
+                     isInterrupted = true;
+                  }
+               }
+            }
+            register(i);
+         }
+      } finally {
+         //no more jobs for the threads when a block failed
+         synchronized (this) {
+            nextJob = num;
+         }
+         for (int i = 0; i < threads; i++) {
+            if (workers[i] != null) {
+               while (true) {
+                  try {
+                     workers[i].join();
+                     break;
+                  } catch (InterruptedException e) {
+                     isInterrupted = true;
+                  }
+               }
+            }
+         }
+         if (isInterrupted) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   private void register(int job) {
+      Throwable e = errors[job];
+      if (e != null) {
+         if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+         }
+         if (e instanceof Error) {
+            throw (Error) e;
+         }
+         throw new RuntimeException(e.toString());
+      }
+      if (envs[job] != null) {
+         bc.loadAgents(envs[job], agents[job], isCorrupted[job], gids[job], iids[job]);
+         //release for gc
+         envs[job] = null;
+         agents[job] = null;
+      }
+   }
+
+   /**
+    * Fetch loop
+    */
+   public void run() {
+      while (true) {
+         int job = 0;
+         synchronized (this) {
+            if (nextJob >= gids.length) {
+               numThreads--;
+               return;
+            }
+            job = nextJob++;
+         }
+         fetch(job);
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerLoader.class, 217);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numBlocks", gids.length);
+      dc.appendVarWithSpace("nextJob", nextJob);
+      dc.appendVarWithSpace("maxThreads", maxThreads);
+      dc.appendVarWithSpace("numThreads", numThreads);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerLoader.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -0,0 +1,199 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.sources.MemorySource;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Completion handle of a {@link ByteController#saveAgentsAsync()}.
+ * <br>
+ * <br>
+ * Each gid/iid block written to a {@link MemorySource} reports its numbers to the handle.
+ * Numbers are aggregated by {@link MemorySource}, i.e. by gid.
+ * <br>
+ * <br>
+ * {@link ByteControllerSaveHandle#waitFor()} blocks the calling thread until all the blocks are written.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerSaveHandle extends ObjectBoc {
+
+   private int[]            agentsBySource;
+
+   private int[]            bytesBySource;
+
+   private RuntimeException error;
+
+   /**
+    * True once all blocks have been submitted
+    */
+   private boolean          isSealed;
+
+   private int              numBlocks;
+
+   private int              numFailed;
+
+   private int              pending;
+
+   /**
+    *
+    * @param boc
+    * @param numSources number of {@link MemorySource}s of the {@link ByteController}
+    */
+   public ByteControllerSaveHandle(BOCtx boc, int numSources) {
+      super(boc);
+      agentsBySource = new int[numSources];
+      bytesBySource = new int[numSources];
+   }
+
+   synchronized void addPending() {
+      pending++;
+   }
+
+   /**
+    * Called by the thread that wrote the block.
+    * @param gid
+    * @param stats agents and bytes written
+    * @param e null when the block was written
+    */
+   synchronized void blockDone(int gid, int[] stats, RuntimeException e) {
+      pending--;
+      numBlocks++;
+      if (e != null) {
+         numFailed++;
+         if (error == null) {
+            error = e;
+         }
+      } else if (gid >= 0 && gid < agentsBySource.length) {
+         agentsBySource[gid] += stats[0];
+         bytesBySource[gid] += stats[1];
+      }
+      if (isDone()) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * First exception thrown while writing a block. null if none
+    * @return
+    */
+   public synchronized RuntimeException getError() {
+      return error;
+   }
+
+   public synchronized int getNumAgents() {
+      int total = 0;
+      for (int i = 0; i < agentsBySource.length; i++) {
+         total += agentsBySource[i];
+      }
+      return total;
+   }
+
+   /**
+    * Number of agents written to {@link MemorySource} gid
+    * @param gid
+    * @return
+    */
+   public synchronized int getNumAgents(int gid) {
+      return agentsBySource[gid];
+   }
+
+   /**
+    * Number of gid/iid blocks processed so far, failed ones included
+    * @return
+    */
+   public synchronized int getNumBlocks() {
+      return numBlocks;
+   }
+
+   public synchronized int getNumBytes() {
+      int total = 0;
+      for (int i = 0; i < bytesBySource.length; i++) {
+         total += bytesBySource[i];
+      }
+      return total;
+   }
+
+   /**
+    * Number of bytes written to {@link MemorySource} gid
+    * @param gid
+    * @return
+    */
+   public synchronized int getNumBytes(int gid) {
+      return bytesBySource[gid];
+   }
+
+   public synchronized int getNumFailed() {
+      return numFailed;
+   }
+
+   /**
+    * True when all blocks have been processed
+    * @return
+    */
+   public synchronized boolean isDone() {
+      return isSealed && pending == 0;
+   }
+
+   /**
+    * No more blocks will be submitted
+    */
+   synchronized void seal() {
+      isSealed = true;
+      if (isDone()) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * Waits for all blocks to be processed.
+    * <br>
+    * When the calling thread is interrupted, returns the numbers so far and keeps the interrupt status of the thread.
+    * Check {@link ByteControllerSaveHandle#isDone()}.
+    * @return array with 2 values. number of agents saved and number of bytes written
+    */
+   public synchronized int[] waitFor() {
+      while (!isDone()) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+         }
+      }
+      return new int[] { getNumAgents(), getNumBytes() };
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerSaveHandle.class, 174);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+      dc.nl();
+      dc.debugAlone("agentsBySource", agentsBySource, ",");
+      dc.nl();
+      dc.debugAlone("bytesBySource", bytesBySource, ",");
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("pending", pending);
+      dc.appendVarWithSpace("numBlocks", numBlocks);
+      dc.appendVarWithSpace("numFailed", numFailed);
+      dc.appendVarWithSpace("isSealed", isSealed);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerSaveHandle.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
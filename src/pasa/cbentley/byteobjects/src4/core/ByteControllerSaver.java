@@ -0,0 +1,226 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.sources.MemorySource;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Bounded pool of threads writing the gid/iid blocks of a {@link ByteController} to their {@link MemorySource}.
+ * <br>
+ * <br>
+ * At most {@link ByteControllerSaver#getMaxThreads()} threads are started. They are started on demand
+ * and stop after {@link ByteControllerSaver#IDLE_TIMEOUT} milliseconds without work.
+ * <br>
+ * With 0 threads, blocks are written by the submitting thread.
+ * <br>
+ * <br>
+ * <b>Coalescing</b>
+ * <br>
+ * A block submitted while the same gid/iid block is still queued is not queued again.
+ * The handle joins the queued entry and the block is written once.
+ * <br>
+ * <br>
+ * Threads are created by {@link ByteControllerSaver#createThread(Runnable)}. A subclass may use lighter threads
+ * when the platform provides them.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteControllerSaver extends ObjectBoc implements Runnable {
+
+   public static final int              IDLE_TIMEOUT        = 2000;
+
+   public static final int              MAX_THREADS_DEFAULT = 2;
+
+   private ByteController               bc;
+
+   private int                          maxThreads;
+
+   /**
+    * Number of submits that joined an already queued block
+    */
+   private int                          numCoalesced;
+
+   private int                          numIdle;
+
+   private int                          numThreads;
+
+   private ByteControllerSaveHandle[][] queueHandles;
+
+   /**
+    * gid/iid of the queued blocks. FIFO
+    */
+   private int[]                        queueKeys;
+
+   private int                          queueSize;
+
+   public ByteControllerSaver(BOCtx boc, ByteController bc) {
+      super(boc);
+      this.bc = bc;
+      maxThreads = MAX_THREADS_DEFAULT;
+      queueKeys = new int[4];
+      queueHandles = new ByteControllerSaveHandle[4][];
+   }
+
+   /**
+    * Creates the thread running the pool loop.
+    * @param r
+    * @return
+    */
+   protected Thread createThread(Runnable r) {
+      return new Thread(r, "ByteControllerSaver");
+   }
+
+   private int getKey(int gid, int iid) {
+      return (gid << 16) | (iid & 0xFFFF);
+   }
+
+   public int getMaxThreads() {
+      return maxThreads;
+   }
+
+   public synchronized int getNumCoalesced() {
+      return numCoalesced;
+   }
+
+   public synchronized int getNumThreads() {
+      return numThreads;
+   }
+
+   /**
+    * Pool loop
+    */
+   public void run() {
+      while (true) {
+         int key = 0;
+         ByteControllerSaveHandle[] handles = null;
+         synchronized (this) {
+            if (queueSize == 0) {
+               numIdle++;
+               try {
+                  wait(IDLE_TIMEOUT);
+               } catch (InterruptedException e) {
+                  e.printStackTrace();
+               }
+               numIdle--;
+            }
+            if (queueSize == 0) {
+               numThreads--;
+               return;
+            }
+            key = queueKeys[0];
+            handles = queueHandles[0];
+            queueSize--;
+            System.arraycopy(queueKeys, 1, queueKeys, 0, queueSize);
+            System.arraycopy(queueHandles, 1, queueHandles, 0, queueSize);
+            queueHandles[queueSize] = null;
+         }
+         runBlock(key >>> 16, key & 0xFFFF, handles);
+      }
+   }
+
+   private void runBlock(int gid, int iid, ByteControllerSaveHandle[] handles) {
+      int[] stats = new int[2];
+      RuntimeException ex = null;
+      try {
+         bc.saveBlockLocked(stats, gid, iid);
+      } catch (RuntimeException e) {
+         //#debug
+         toDLog().pMemoryWarn("Save failed gid=" + gid + " iid=" + iid + " " + e.toString(), this, ByteControllerSaver.class, "runBlock");
+         ex = e;
+      }
+      for (int i = 0; i < handles.length; i++) {
+         handles[i].blockDone(gid, stats, ex);
+      }
+   }
+
+   /**
+    * Maximum number of threads. 0 to write blocks in the submitting thread.
+    * <br>
+    * Running threads above a lower maximum stop when idle.
+    * @param maxThreads
+    */
+   public synchronized void setMaxThreads(int maxThreads) {
+      if (maxThreads < 0) {
+         throw new IllegalArgumentException("maxThreads " + maxThreads);
+      }
+      this.maxThreads = maxThreads;
+   }
+
+   /**
+    * Queues the gid/iid block for writing. The handle is notified once the block is written.
+    * @param gid
+    * @param iid
+    * @param handle
+    */
+   public void submit(int gid, int iid, ByteControllerSaveHandle handle) {
+      handle.addPending();
+      boolean isInline = false;
+      synchronized (this) {
+         isInline = maxThreads == 0;
+         if (!isInline) {
+            int key = getKey(gid, iid);
+            for (int i = 0; i < queueSize; i++) {
+               if (queueKeys[i] == key) {
+                  ByteControllerSaveHandle[] hs = queueHandles[i];
+                  ByteControllerSaveHandle[] nhs = new ByteControllerSaveHandle[hs.length + 1];
+                  System.arraycopy(hs, 0, nhs, 0, hs.length);
+                  nhs[hs.length] = handle;
+                  queueHandles[i] = nhs;
+                  numCoalesced++;
+                  return;
+               }
+            }
+            if (queueSize == queueKeys.length) {
+               int[] nk = new int[queueSize << 1];
+               System.arraycopy(queueKeys, 0, nk, 0, queueSize);
+               queueKeys = nk;
+               ByteControllerSaveHandle[][] nh = new ByteControllerSaveHandle[queueSize << 1][];
+               System.arraycopy(queueHandles, 0, nh, 0, queueSize);
+               queueHandles = nh;
+            }
+            queueKeys[queueSize] = key;
+            queueHandles[queueSize] = new ByteControllerSaveHandle[] { handle };
+            queueSize++;
+            if (numIdle > 0) {
+               notify();
+            } else if (numThreads < maxThreads) {
+               numThreads++;
+               createThread(this).start();
+            }
+         }
+      }
+      if (isInline) {
+         runBlock(gid, iid, new ByteControllerSaveHandle[] { handle });
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteControllerSaver.class, 200);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("maxThreads", maxThreads);
+      dc.appendVarWithSpace("numThreads", numThreads);
+      dc.appendVarWithSpace("numIdle", numIdle);
+      dc.appendVarWithSpace("queueSize", queueSize);
+      dc.appendVarWithSpace("numCoalesced", numCoalesced);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteControllerSaver.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
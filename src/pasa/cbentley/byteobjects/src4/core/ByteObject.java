@@ -4,6 +4,7 @@
  */
 package pasa.cbentley.byteobjects.src4.core;
 
+import pasa.cbentley.byteobjects.src4.core.interfaces.IBOByteControler;
 import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObject;
 import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
 import pasa.cbentley.byteobjects.src4.ctx.IBOTypesBOC;
@@ -121,12 +122,24 @@ public class ByteObject implements IByteObject, IStringable {
 
    public static final int MINUS_SIGN_24BITS_FLAG = 1 << 23;
 
+   /**
+    * Below this number of params, typed sub lookups scan {@link ByteObject#param} without building an index.
+    */
+   public static final int SUB_INDEX_MIN_PARAMS   = 8;
+
    /**
     * {@link BOCtx} provides the application context to {@link UCtx}.
     * 
     */
    protected BOCtx         boc;
 
+   /**
+    * Incremental mode of {@link ByteObject#getCheckSum()}. null when not enabled.
+    * <br>
+    * See {@link ByteObject#setChecksumIncremental(boolean)}
+    */
+   private ByteObjectChecksum checksum;
+
    /**
     * Length of ByteObject is defined by {@link IByteObject#A_OBJECT_OFFSET_3_LENGTH2}
     */
@@ -154,6 +167,24 @@ public class ByteObject implements IByteObject, IStringable {
     */
    protected ByteObject[]  param;
 
+   /**
+    * Type index of {@link ByteObject#param}, built lazily by typed sub lookups when there are
+    * at least {@link ByteObject#SUB_INDEX_MIN_PARAMS} params.
+    * <br>
+    * <li>[0] number k of distinct types
+    * <li>k pairs of (type, start) sorted by type. start is the position in this array of the first param index of that type
+    * <li>param indexes grouped by type, in param order
+    * <br>
+    * <br>
+    * See {@link ByteObject#invalidateSubIndex()}
+    */
+   private int[]           subTypeIndex;
+
+   /**
+    * The {@link ByteObject#param} array for which {@link ByteObject#subTypeIndex} was built
+    */
+   private ByteObject[]    subTypeIndexParams;
+
    //#debug
    private String          toStringName           = null;
 
@@ -174,8 +205,11 @@ public class ByteObject implements IByteObject, IStringable {
     * the length of the byte array.
     * <br>
     * <br>
+    * When the header is {@link IByteObject#A_OBJECT_LENGTH_EXTENDED}, the 4 bytes length is set.
+    * <br>
+    * <br>
     * @param data
-    * @throws IllegalArgumentException when data is over 0xFFFF
+    * @throws IllegalArgumentException when data is over 0xFFFF and its length is not extended
     */
    public ByteObject(BOCtx boc, byte[] data) {
       if (boc == null)
@@ -187,11 +221,18 @@ public class ByteObject implements IByteObject, IStringable {
          if (data.length < A_OBJECT_BASIC_SIZE) {
             throw new IllegalArgumentException("ByteObject Data Length Illegal " + data.length);
          }
-         if (data.length >= 0xFFFF) {
-            //
-            throw new IllegalArgumentException("Data size too big");
+         if (isLengthExtended()) {
+            if (data.length < A_OBJECT_EXTENDED_BASIC_SIZE) {
+               throw new IllegalArgumentException("ByteObject Data Length Illegal " + data.length);
+            }
+            setInt(A_OBJECT_OFFSET_4_LENGTH_EXT4, data.length);
+         } else {
+            if (data.length >= 0xFFFF) {
+               //
+               throw new IllegalArgumentException("Data size too big. Use extended length");
+            }
+            setShortInt(A_OBJECT_OFFSET_3_LENGTH2, data.length);
          }
-         setShortInt(A_OBJECT_OFFSET_3_LENGTH2, data.length);
       }
    }
 
@@ -303,6 +344,8 @@ public class ByteObject implements IByteObject, IStringable {
     * @param bo
     */
    public int addByteObject(ByteObject bo) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       if (bo == null) {
          return -1;
@@ -353,6 +396,8 @@ public class ByteObject implements IByteObject, IStringable {
     * @return the index at which the {@link ByteObject} was set in the parameter array.
     */
    public int addByteObjectUniqueType(ByteObject bo) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       if (bo == null) {
          return -1;
@@ -383,6 +428,8 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public int addByteObjectWithNullAccepted(ByteObject bo) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       if (param == null) {
          param = new ByteObject[] { bo };
@@ -401,6 +448,8 @@ public class ByteObject implements IByteObject, IStringable {
     * @param bos
     */
    public void addByteObjectWithNulls(ByteObject[] bos) {
+      loadParams();
+      invalidateSubIndex();
       if (bos == null) {
          return;
       }
@@ -421,33 +470,13 @@ public class ByteObject implements IByteObject, IStringable {
     * <br>
     * <br>
     * i.e the deepest object is added first in ITO.
+    * <br>
+    * Cross references are detected with the identity table of {@link ByteObjectTopology}.
     * @param ito
     * @param refs Global reference list. only take new objects.
     */
    void addFlatLine(IntToObjects ito, IntToObjects refs) {
-      int pos = refs.findObjectRef(this);
-      if (pos != -1) {
-         //cross reference 
-         ito.add(null, pos);
-      } else {
-         ito.add(this, pos);
-         if (refs != ito) {
-            //adds object in the global references as well
-            refs.add(this, 0);
-         }
-         //only add sub param if not already in the global references
-         if (param != null) {
-            for (int i = 0; i < param.length; i++) {
-               if (param[i] != null) {
-                  param[i].addFlatLine(ito, refs);
-               } else {
-                  //null and -1 equals a real null
-                  refs.add(null, -1);
-               }
-            }
-         }
-      }
-
+      new ByteObjectTopology(boc, ito, refs).addFlatLine(this);
    }
 
    /**
@@ -493,6 +522,28 @@ public class ByteObject implements IByteObject, IStringable {
       }
    }
 
+   /**
+    * Tells the incremental checksum, if any, that len bytes at offset were written.
+    * <br>
+    * Must be called by code writing directly in {@link ByteObject#data}.
+    * @param offset relative to {@link ByteObject#index}
+    * @param len
+    */
+   protected void checksumDirty(int offset, int len) {
+      if (checksum != null) {
+         checksum.setDirty(offset, len);
+      }
+   }
+
+   /**
+    * Called before bytes of {@link ByteObject#data} are written. {@link ByteObject#data} and {@link ByteObject#index}
+    * must be read after the call.
+    * <br>
+    * Does nothing by default. {@link ByteObjectManaged} copies a view over the memory of a source on its first write.
+    */
+   protected void writeBegin() {
+   }
+
    /**
     * A Full clone of everything through the serialization {@link ByteObject#toByteArray()}
     * If object is in repository, clone with be in the repository.
@@ -536,6 +587,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject cloneCopyHeadCopyParams() {
+      loadParams();
       int len = getLength();
       byte[] d = new byte[len];
       System.arraycopy(data, index, d, 0, d.length);
@@ -555,7 +607,9 @@ public class ByteObject implements IByteObject, IStringable {
     * @param len the first len bytes
     */
    public void cloneCopyHeaderFirstBytesFrom(ByteObject bo, int len) {
+      writeBegin();
       System.arraycopy(bo.data, bo.index, data, index, len);
+      checksumDirty(0, len);
    }
 
    /**
@@ -565,6 +619,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject cloneCopyHeadRefParams() {
+      loadParams();
       int len = getLength();
       byte[] d = new byte[len];
       System.arraycopy(data, index, d, 0, d.length);
@@ -590,6 +645,9 @@ public class ByteObject implements IByteObject, IStringable {
     * @param bo
     */
    public void cloneRefHeadRefParamsFrom(ByteObject bo) {
+      loadParams();
+      invalidateSubIndex();
+      bo.loadParams();
       data = bo.data;
       index = bo.index;
       param = bo.param;
@@ -603,6 +661,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return the number of bytes copied
     */
    public int cloneSerialize(byte[] bytes, int offset) {
+      loadParams();
       ByteObject bo = this;
       System.arraycopy(data, index, bytes, offset, bo.getLength());
       int numParams = 0;
@@ -615,7 +674,13 @@ public class ByteObject implements IByteObject, IStringable {
          } else {
             int len = this.getLength();
             int serializeTrailerSize = TRAILER_LENGTH; //we need to add 3 bytes for the serialize trailer
-            bo = new ByteObject(boc, bytes, offset, len + serializeTrailerSize);
+            if (isLengthExtended()) {
+               //header copied with the extended length marker
+               bo = new ByteObject(boc, bytes, offset);
+               bo.setLength(len + serializeTrailerSize);
+            } else {
+               bo = new ByteObject(boc, bytes, offset, len + serializeTrailerSize);
+            }
             bo.setFlagObject(A_OBJECT_FLAG_4_SERIALIZED, true);
             //now write 
          }
@@ -634,7 +699,9 @@ public class ByteObject implements IByteObject, IStringable {
     * @param len
     */
    public void copyToIndexFromObject(int destIndex, ByteObject bo, int srcOffset, int len) {
+      writeBegin();
       System.arraycopy(bo.data, bo.index + srcOffset, data, index + destIndex, len);
+      checksumDirty(destIndex, len);
    }
 
    public void decrementMin(int index, int size, int incr, int min) {
@@ -702,11 +769,18 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public boolean equals(ByteObject p2) {
       ByteObject p1 = this;
+      if (p1 == p2) {
+         //interned objects
+         return true;
+      }
       if (p1 == null || p2 == null)
          return false;
       if (p1.getType() != p2.getType()) {
          return false;
       }
+      //a lazy object equals its eager twin
+      p1.loadParams();
+      p2.loadParams();
       int len1 = p1.getLength();
       int len2 = p2.getLength();
       if (len1 != len2)
@@ -763,6 +837,10 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public boolean equalsContent(ByteObject p2) {
       ByteObject p1 = this; //p1 cannot be null
+      if (p1 == p2) {
+         //interned objects
+         return true;
+      }
       if (p2 == null)
          return false;
       if (p1.getType() != p2.getType()) {
@@ -1094,16 +1172,33 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    /**
-    * 
+    * CRC32C of the bytes of this {@link ByteObject}.
+    * <br>
+    * <br>
+    * When {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM} is set, the 4 bytes of the checksum field are not included.
+    * <br>
+    * In incremental mode, only the blocks modified since the last call are hashed.
+    * See {@link ByteObject#setChecksumIncremental(boolean)}
     * @return
     */
    public int getCheckSum() {
-      //      Checksum checksum = new CRC32();
-      //      // update the current checksum with the specified array of bytes
-      //      checksum.update(bytes, 0, bytes.length);
-      //      long checksumValue = checksum.getValue();
-      //      System.out.println("CRC32 checksum for input string is: " + checksumValue);
-      throw new RuntimeException("Not Implemented");
+      int len = getLength();
+      int end = len;
+      if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+         end = getSuffixChecksumOffset();
+      }
+      int crc = 0;
+      if (checksum != null) {
+         crc = checksum.getChecksum(data, index, end);
+      } else {
+         crc = ByteObjectChecksum.update(0, data, index, end);
+      }
+      if (end != len) {
+         //trailer fields after the checksum
+         int tail = end + CHECKSUM_BYTE_SIZE;
+         crc = ByteObjectChecksum.update(crc, data, index + tail, len - tail);
+      }
+      return crc;
    }
 
    /**
@@ -1212,6 +1307,19 @@ public class ByteObject implements IByteObject, IStringable {
       return IntUtils.readInt24BE(data, this.index + index);
    }
 
+   /**
+    * Size of the header. Fields start at this offset.
+    * <li> {@link IByteObject#A_OBJECT_BASIC_SIZE}
+    * <li> {@link IByteObject#A_OBJECT_EXTENDED_BASIC_SIZE} when length is extended
+    * @return
+    */
+   public int getHeaderSize() {
+      if (isLengthExtended()) {
+         return A_OBJECT_EXTENDED_BASIC_SIZE;
+      }
+      return A_OBJECT_BASIC_SIZE;
+   }
+
    /**
     * 0 if none was previously set
     * @return
@@ -1258,7 +1366,11 @@ public class ByteObject implements IByteObject, IStringable {
     * @return the number of bytes which make this {@link ByteObject}. Includes everything. header,body,trailer.
     */
    public int getLength() {
-      return ShortUtils.readShortBEUnsigned(data, index + A_OBJECT_OFFSET_3_LENGTH2);
+      int len = ShortUtils.readShortBEUnsigned(data, index + A_OBJECT_OFFSET_3_LENGTH2);
+      if (len == A_OBJECT_LENGTH_EXTENDED) {
+         return IntUtils.readIntBE(data, index + A_OBJECT_OFFSET_4_LENGTH_EXT4);
+      }
+      return len;
    }
 
    /**
@@ -1267,6 +1379,9 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public int getLengthData() {
       int v = ShortUtils.readShortBEUnsigned(data, index + A_OBJECT_OFFSET_3_LENGTH2);
+      if (v == A_OBJECT_LENGTH_EXTENDED) {
+         return IntUtils.readIntBE(data, index + A_OBJECT_OFFSET_4_LENGTH_EXT4) - A_OBJECT_EXTENDED_BASIC_SIZE;
+      }
       v = v - A_OBJECT_BASIC_SIZE;
       return v;
    }
@@ -1285,6 +1400,7 @@ public class ByteObject implements IByteObject, IStringable {
     * VAL1 VAL2-PARAM.LENGTH-VAL3
     */
    public String getMyHashCode() {
+      loadParams();
       StringBBuilder sb = new StringBBuilder(boc.getUC(), 10);
       sb.append("[#code=");
       int val1 = 0;
@@ -1364,6 +1480,35 @@ public class ByteObject implements IByteObject, IStringable {
       return -1;
    }
 
+   /**
+    * Number of bytes written by {@link ByteObject#toByteArray(IntToObjects, ByteObject)} for the given topology.
+    * <br>
+    * <br>
+    * Only length headers are read.
+    * @param topology computed by {@link ByteObject#getTopology(IntToObjects)}
+    * @return
+    */
+   public int getSerializedSize(IntToObjects topology) {
+      int sizeTotal = 0;
+      for (int i = 0; i < topology.nextempty; i++) {
+         //object to serialize
+         ByteObject bo = ((ByteObject) topology.objects[i]);
+         //magic byte
+         if (bo != null) {
+            sizeTotal += bo.getLength();
+            boolean isNotSerialized = !bo.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_4_SERIALIZED);
+            if (bo.param != null && isNotSerialized) {
+               //2 byte for number of sub params +1 for magic byte
+               sizeTotal += TRAILER_LENGTH;
+            }
+         } else {
+            //1 + 4 bytes for reference
+            sizeTotal += 5;
+         }
+      }
+      return sizeTotal;
+   }
+
    /**
     * Called only in the context of a serialized {@link ByteObject}.
     * <br>
@@ -1419,6 +1564,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public ByteObject getSub(int index, int size, int value) {
+      loadParams();
       if (param == null)
          return null;
       for (int i = 0; i < param.length; i++) {
@@ -1438,6 +1584,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @throws ArrayIndexOutOfBoundsException if ar is not big enough
     */
    public int getSubAppend(ByteObject[] ar, int offset, int type) {
+      loadParams();
       if (param == null) {
          return 0;
       }
@@ -1452,6 +1599,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public ByteObject getSubAtIndex(int index) {
+      loadParams();
       //TODO reads if we have subs in pointer table
       return param[index];
    }
@@ -1462,6 +1610,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubAtIndexNull(int index) {
+      loadParams();
       if (param != null && index >= 0 && index < param.length) {
          return param[index];
       }
@@ -1503,6 +1652,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public ByteObject getSubFirstEx(int type, int typeEx) {
+      loadParams();
       if (param == null)
          return null;
       for (int i = 0; i < param.length; i++) {
@@ -1536,6 +1686,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return {@link ByteObject} located at index read at offset or null;
     */
    public ByteObject getSubIndexed1(int offset) {
+      loadParams();
       int parami = get1(offset);
       if (param != null && parami < param.length) {
          return param[parami];
@@ -1549,6 +1700,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return {@link ByteObject} located at index read at offset or null;
     */
    public ByteObject getSubIndexed2(int offset) {
+      loadParams();
       int parami = get2(offset);
       if (param != null && parami < param.length) {
          return param[parami];
@@ -1557,6 +1709,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public ByteObject getSubIntra(int intraRef) {
+      loadParams();
       if (param == null)
          return null;
       for (int i = 0; i < param.length; i++) {
@@ -1588,9 +1741,20 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public int getSubNum(int type) {
+      loadParams();
       if (param == null) {
          return 0;
       }
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlotChecked(idx, type);
+         if (slot == -1) {
+            return 0;
+         }
+         if (slot >= 0) {
+            return getSubTypeSlotEnd(idx, slot) - idx[2 + 2 * slot];
+         }
+      }
       int count = 0;
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
@@ -1616,8 +1780,26 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubOrder(int type, int num) {
+      loadParams();
       if (param == null)
          return null;
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlot(idx, type);
+         if (slot == -1) {
+            return null;
+         }
+         int start = idx[2 + 2 * slot];
+         if (num < 0 || start + num >= getSubTypeSlotEnd(idx, slot)) {
+            return null;
+         }
+         ByteObject bo = param[idx[start + num]];
+         if (bo != null && bo.getType() == type) {
+            return bo;
+         }
+         //stale index. param array was modified directly
+         invalidateSubIndex();
+      }
       int count = 0;
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
@@ -1645,8 +1827,26 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public int getSubOrderIndex(int type, int num) {
+      loadParams();
       if (param == null)
          return -1;
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlot(idx, type);
+         if (slot == -1) {
+            return -1;
+         }
+         int start = idx[2 + 2 * slot];
+         if (num < 0 || start + num >= getSubTypeSlotEnd(idx, slot)) {
+            return -1;
+         }
+         int i = idx[start + num];
+         if (param[i] != null && param[i].getType() == type) {
+            return i;
+         }
+         //stale index. param array was modified directly
+         invalidateSubIndex();
+      }
       int count = 0;
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
@@ -1665,8 +1865,26 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubOrderLast(int type, int num) {
+      loadParams();
       if (param == null)
          return null;
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlot(idx, type);
+         if (slot == -1) {
+            return null;
+         }
+         int end = getSubTypeSlotEnd(idx, slot);
+         if (num < 0 || end - 1 - num < idx[2 + 2 * slot]) {
+            return null;
+         }
+         ByteObject bo = param[idx[end - 1 - num]];
+         if (bo != null && bo.getType() == type) {
+            return bo;
+         }
+         //stale index. param array was modified directly
+         invalidateSubIndex();
+      }
       int count = 0;
       for (int i = param.length - 1; i >= 0; i--) {
          if (param[i] != null && param[i].getType() == type) {
@@ -1684,6 +1902,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject[] getSubs() {
+      loadParams();
       return param;
    }
 
@@ -1699,6 +1918,22 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject[] getSubs(int type) {
+      loadParams();
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlotChecked(idx, type);
+         if (slot == -1) {
+            return new ByteObject[0];
+         }
+         if (slot >= 0) {
+            int start = idx[2 + 2 * slot];
+            ByteObject[] results = new ByteObject[getSubTypeSlotEnd(idx, slot) - start];
+            for (int i = 0; i < results.length; i++) {
+               results[i] = param[idx[start + i]];
+            }
+            return results;
+         }
+      }
       int num = getSubNum(type);
       ByteObject[] results = new ByteObject[num];
       int count = 0;
@@ -1713,6 +1948,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public ByteObject[] getSubsRange(int index, int len) {
+      loadParams();
       ByteObject[] ar = new ByteObject[len];
       System.arraycopy(param, index, ar, 0, len);
       return ar;
@@ -1740,6 +1976,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubSub(int type, int subType, int index, int size, int num) {
+      loadParams();
       if (param == null)
          return null;
       int count = 0;
@@ -1769,6 +2006,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return the number of appended {@link ByteObject} matching the type
     */
    public int getSubSubAppend(ByteObject[] ar, int offset, int type, int subType, int subTypeOffset, int subTypeSize) {
+      loadParams();
       if (param == null) {
          return 0;
       }
@@ -1799,6 +2037,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public int getSubSubNum(int type, int subTypeOffset, int subTypeSize, int subType) {
+      loadParams();
       if (param == null) {
          return 0;
       }
@@ -1822,8 +2061,26 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubTypedIntra(int type, int intraRef) {
+      loadParams();
       if (param == null)
          return null;
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlotChecked(idx, type);
+         if (slot == -1) {
+            return null;
+         }
+         if (slot >= 0) {
+            int end = getSubTypeSlotEnd(idx, slot);
+            for (int j = idx[2 + 2 * slot]; j < end; j++) {
+               ByteObject bo = param[idx[j]];
+               if (bo.getIntraReference() == intraRef) {
+                  return bo;
+               }
+            }
+            return null;
+         }
+      }
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
             if (param[i].getIntraReference() == intraRef)
@@ -1842,6 +2099,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public ByteObject getSubValueMatch(int type, int index, int size, int value) {
+      loadParams();
       if (param == null)
          return null;
       for (int i = 0; i < param.length; i++) {
@@ -1853,10 +2111,133 @@ public class ByteObject implements IByteObject, IStringable {
       return null;
    }
 
+   /**
+    * The type index of {@link ByteObject#param}, building it when needed.
+    * <br>
+    * <br>
+    * Rebuilt when {@link ByteObject#param} was replaced by another array.
+    * @return null when there are less than {@link ByteObject#SUB_INDEX_MIN_PARAMS} params
+    */
+   private int[] getSubTypeIndex() {
+      if (param == null || param.length < SUB_INDEX_MIN_PARAMS) {
+         return null;
+      }
+      if (subTypeIndex == null || subTypeIndexParams != param) {
+         //count params for each type
+         int[] counts = new int[256];
+         int numTypes = 0;
+         int numSubs = 0;
+         for (int i = 0; i < param.length; i++) {
+            if (param[i] != null) {
+               int type = param[i].getType();
+               if (counts[type] == 0) {
+                  numTypes++;
+               }
+               counts[type]++;
+               numSubs++;
+            }
+         }
+         int[] idx = new int[1 + 2 * numTypes + numSubs];
+         idx[0] = numTypes;
+         int slot = 0;
+         int start = 1 + 2 * numTypes;
+         for (int type = 0; type < counts.length; type++) {
+            if (counts[type] != 0) {
+               idx[1 + 2 * slot] = type;
+               idx[2 + 2 * slot] = start;
+               start += counts[type];
+               //reuse counts as the write position of the type
+               counts[type] = idx[2 + 2 * slot];
+               slot++;
+            }
+         }
+         for (int i = 0; i < param.length; i++) {
+            if (param[i] != null) {
+               idx[counts[param[i].getType()]++] = i;
+            }
+         }
+         subTypeIndex = idx;
+         subTypeIndexParams = param;
+      }
+      return subTypeIndex;
+   }
+
+   /**
+    * 
+    * @param idx
+    * @param slot
+    * @return position in idx after the last param index of the slot
+    */
+   private int getSubTypeSlotEnd(int[] idx, int slot) {
+      if (slot + 1 < idx[0]) {
+         return idx[2 + 2 * (slot + 1)];
+      }
+      return idx.length;
+   }
+
+   /**
+    * Binary search of type in the sorted type pairs of idx
+    * @param idx
+    * @param type
+    * @return -1 if type has no param
+    */
+   private int getSubTypeSlot(int[] idx, int type) {
+      int low = 0;
+      int high = idx[0] - 1;
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+         int t = idx[1 + 2 * mid];
+         if (t < type) {
+            low = mid + 1;
+         } else if (t > type) {
+            high = mid - 1;
+         } else {
+            return mid;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Slot of type in idx, once each param of the slot is checked to still have that type.
+    * <br>
+    * Drops the index when one does not, the param array having been modified directly.
+    * @param idx
+    * @param type
+    * @return -1 if type has no param, -2 if the index was stale
+    */
+   private int getSubTypeSlotChecked(int[] idx, int type) {
+      int slot = getSubTypeSlot(idx, type);
+      if (slot == -1) {
+         return -1;
+      }
+      int end = getSubTypeSlotEnd(idx, slot);
+      for (int j = idx[2 + 2 * slot]; j < end; j++) {
+         ByteObject bo = param[idx[j]];
+         if (bo == null || bo.getType() != type) {
+            //stale index. param array was modified directly
+            invalidateSubIndex();
+            return -2;
+         }
+      }
+      return slot;
+   }
+
    public int getSuffixIntraOffset() {
       return getLength() - INTRA_REF_BYTE_SIZE;
    }
 
+   /**
+    * The offset of the CRC32C field (4 bytes). It is the first field of the trailer.
+    * <br>
+    * <br>
+    * {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM}
+    * @return
+    */
+   public int getSuffixChecksumOffset() {
+      return getLength() - getTrailerSize();
+   }
+
    /**
     * The offset where is supposed to be written the version count (2 bytes)
     * <br>
@@ -1924,6 +2305,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public int getTotalLenth() {
+      loadParams();
       int size = 0;
       if (param != null) {
          ByteObject[] flat = getSubFlatline();
@@ -1939,6 +2321,7 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    private int getTotalLenth(IntToObjects ito) {
+      loadParams();
       ito.add(this, 0);
       int size = getLength();
       if (param != null) {
@@ -1957,6 +2340,7 @@ public class ByteObject implements IByteObject, IStringable {
     * Returns the size of the trailer.
     * <br>
     * This is decided by several flags
+    * <li> {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM}
     * <li> {@link IByteObject#A_OBJECT_FLAG_3_VERSIONING}
     * <li> {@link IByteObject#A_OBJECT_TAIL_FLAG_6_INTRA_REFERENCE}
     * 
@@ -1964,6 +2348,9 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public int getTrailerSize() {
       int size = 0;
+      if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+         size += CHECKSUM_BYTE_SIZE;
+      }
       if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_3_VERSIONING)) {
          size += 2;
       }
@@ -2207,8 +2594,16 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public boolean hasSubType(int type) {
+      loadParams();
       if (param == null)
          return false;
+      int[] idx = getSubTypeIndex();
+      if (idx != null) {
+         int slot = getSubTypeSlotChecked(idx, type);
+         if (slot != -2) {
+            return slot != -1;
+         }
+      }
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
             return true;
@@ -2221,6 +2616,32 @@ public class ByteObject implements IByteObject, IStringable {
       if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_7_IMMUTABLE)) {
          throw new IllegalArgumentException("Cannot modify immutable byteobject");
       }
+      //setters check before writing
+      writeBegin();
+   }
+
+   /**
+    * Drops the type index used by typed sub lookups such as {@link ByteObject#getSubFirst(int)}.
+    * <br>
+    * <br>
+    * Called by all methods modifying {@link ByteObject#param}.
+    * <br>
+    * Must be called after writing directly in the array returned by {@link ByteObject#getSubs()}.
+    * Typed lookups check the params of the type they read and drop a stale index themselves,
+    * but a param written directly with a type the index does not list for it is only seen after this call.
+    */
+   public void invalidateSubIndex() {
+      subTypeIndex = null;
+      subTypeIndexParams = null;
+   }
+
+   /**
+    * Called before {@link ByteObject#param} is read or modified.
+    * <br>
+    * <br>
+    * Does nothing by default. {@link ByteObjectLazy} creates its params on the first call.
+    */
+   protected void loadParams() {
    }
 
    private void increaseCapacityParams(int incr) {
@@ -2233,10 +2654,12 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public void increaseVersionCount() {
       if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_3_VERSIONING)) {
+         writeBegin();
          int index = this.index + getSuffixVersioningOffset();
          int v = ShortUtils.readShortBEUnsigned(data, index);
          v++;
          ShortUtils.writeShortBEUnsigned(data, index, v);
+         checksumDirty(index - this.index, VERSION_BYTE_SIZE);
       }
    }
 
@@ -2253,6 +2676,10 @@ public class ByteObject implements IByteObject, IStringable {
     * @param incr
     */
    protected void incrementLength(int incr) {
+      if (isLengthExtended()) {
+         incrementNoVersion(A_OBJECT_OFFSET_4_LENGTH_EXT4, 4, incr);
+         return;
+      }
       int val = getValue(index + A_OBJECT_OFFSET_3_LENGTH2, 2);
       val += incr;
       setValueNoVersion(index + A_OBJECT_OFFSET_3_LENGTH2, val, 2);
@@ -2265,9 +2692,36 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public void insertByteObject(ByteObject bo, int index) {
+      loadParams();
+      invalidateSubIndex();
       param = boc.getBOU().insertByteObject(param, index, bo);
    }
 
+   /**
+    * Compares {@link ByteObject#getCheckSum()} with the value stored in the trailer.
+    * <br>
+    * <br>
+    * True when {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM} is not set.
+    * @return false when bytes were modified without calling {@link ByteObject#updateChecksum()}
+    */
+   public boolean isChecksumValid() {
+      if (!hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+         return true;
+      }
+      int stored = IntUtils.readIntBE(data, index + getSuffixChecksumOffset());
+      return stored == getCheckSum();
+   }
+
+   /**
+    * True when the length is coded on 4 bytes.
+    * <br>
+    * {@link IByteObject#A_OBJECT_LENGTH_EXTENDED}
+    * @return
+    */
+   public boolean isLengthExtended() {
+      return ShortUtils.readShortBEUnsigned(data, index + A_OBJECT_OFFSET_3_LENGTH2) == A_OBJECT_LENGTH_EXTENDED;
+   }
+
    /**
     * Tries first to merge based on known Types in the module.
     * <br>
@@ -2300,6 +2754,8 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public void removeSub(int type) {
+      loadParams();
+      invalidateSubIndex();
       for (int i = 0; i < param.length; i++) {
          if (param[i] != null && param[i].getType() == type) {
             param[i] = null;
@@ -2309,13 +2765,19 @@ public class ByteObject implements IByteObject, IStringable {
 
    /**
     * Inverse method  {@link ByteObjectFactory#serializeReverse(BADataIS)}
+    * <br>
+    * <br>
+    * Streams the graph into dos. No byte array of the whole graph is created.
+    * <br>
+    * The 4 bytes length header is computed with {@link ByteObject#getSerializedSize(IntToObjects)}
+    * which only reads the length headers of the topology.
     * @param dos
     */
    public void serialize(BADataOS dos) {
-      byte[] data = this.toByteArray();
-      byte[] header = IntUtils.byteArrayBEFromInt(data.length);
+      IntToObjects topology = getTopology(null);
+      byte[] header = IntUtils.byteArrayBEFromInt(getSerializedSize(topology));
       dos.write(header); //length of array
-      dos.write(data);
+      serializeTopology(topology, dos);
    }
 
    /**
@@ -2323,13 +2785,54 @@ public class ByteObject implements IByteObject, IStringable {
     * If Object has already been written, it is not written anymore.
     * 
     * Write object, check
+    * <br>
+    * Same bytes as {@link ByteObject#toByteArray(IntToObjects)}, written chunk by chunk.
     * 
     * @param ito
     * @param dos
     */
    public void serializeTo(IntToObjects ito, BADataOS dos) {
-      byte[] data = toByteArray(ito);
-      dos.write(data); //write without anything else
+      IntToObjects topology = getTopology(ito);
+      serializeTopology(topology, dos); //write without anything else
+   }
+
+   /**
+    * Writes each {@link ByteObject} of the topology with {@link ByteObject#cloneSerialize(byte[], int)} semantics.
+    * <br>
+    * <br>
+    * {@link ByteObject} without params are written directly from their data array.
+    * <br>
+    * Others are cloned in a scratch array sized for the biggest such object, so that the serialize trailer
+    * can be written without touching the source.
+    * 
+    * @param topology
+    * @param dos
+    */
+   private void serializeTopology(IntToObjects topology, BADataOS dos) {
+      byte[] scratch = null;
+      byte[] reference = null;
+      for (int i = 0; i < topology.nextempty; i++) {
+         ByteObject bo = ((ByteObject) topology.objects[i]);
+         if (bo != null) {
+            if (bo.param == null) {
+               dos.write(bo.data, bo.index, bo.getLength());
+            } else {
+               int size = bo.getLength() + TRAILER_LENGTH;
+               if (scratch == null || scratch.length < size) {
+                  scratch = new byte[size];
+               }
+               int copied = bo.cloneSerialize(scratch, 0);
+               dos.write(scratch, 0, copied);
+            }
+         } else {
+            if (reference == null) {
+               reference = new byte[5];
+               reference[0] = IBOTypesBOC.TYPE_015_REFERENCE_32;
+            }
+            IntUtils.writeIntBE(reference, 1, topology.ints[i]);
+            dos.write(reference, 0, 5);
+         }
+      }
    }
 
    /**
@@ -2340,6 +2843,7 @@ public class ByteObject implements IByteObject, IStringable {
    public void set1(int index, int value) {
       immutableCheck();
       data[this.index + index] = (byte) value;
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2350,6 +2854,7 @@ public class ByteObject implements IByteObject, IStringable {
    public void set1Signed(int index, int value) {
       immutableCheck();
       data[this.index + index] = (byte) value;
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2405,6 +2910,7 @@ public class ByteObject implements IByteObject, IStringable {
    public void set2Unsigned(int index, int value) {
       immutableCheck();
       ShortUtils.writeShortBEUnsigned(data, this.index + index, value);
+      checksumDirty(index, 2);
    }
 
    /**
@@ -2431,6 +2937,7 @@ public class ByteObject implements IByteObject, IStringable {
          value |= (MINUS_SIGN_24BITS_FLAG);
       }
       IntUtils.writeInt24BE(data, this.index + index, value);
+      checksumDirty(index, 3);
    }
 
    /**
@@ -2481,6 +2988,7 @@ public class ByteObject implements IByteObject, IStringable {
    private void setByteInt(int index, int value) {
       immutableCheck();
       data[this.index + index] = (byte) value;
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2488,15 +2996,79 @@ public class ByteObject implements IByteObject, IStringable {
     * @param bos
     */
    public void setByteObjects(ByteObject[] bos) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       this.param = bos;
    }
 
    public void setByteObjectsTrimmed(ByteObject[] bos) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       this.param = boc.getBOU().getTrim(bos);
    }
 
+   /**
+    * Enable/Disable the CRC32C trailer field
+    * <br>
+    * When false->true, 4 bytes are inserted at the start of the trailer and the {@link IByteObject#A_OBJECT_OFFSET_3_LENGTH2} is increment by 4.
+    * <br>
+    * The field is written with {@link ByteObject#updateChecksum()}
+    * <br>
+    * <br>
+    * When setting it false, removes the field and the flag
+    * <br>
+    * <br>
+    * Not for {@link ByteObjectManaged}. Their checksum is written by the {@link ByteController}.
+    * See {@link IBOByteControler#MEMC_FLAG_5_CHECKSUM}
+    * @param v
+    */
+   public void setChecksum(boolean v) {
+      boolean has = hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM);
+      if (v && !has) {
+         int len = getLength();
+         //other trailer fields keep their offset from the end
+         int position = index + len - getTrailerSize();
+         setFlagNoVersion(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM, true);
+         //modifies the array data is tricky. only works easily when byte array is free
+         data = getMem().increaseCapacity(data, CHECKSUM_BYTE_SIZE, position);
+         setLength(len + CHECKSUM_BYTE_SIZE);
+         updateChecksum();
+      } else if (!v && has) {
+         int len = getLength();
+         int offset = getSuffixChecksumOffset();
+         int tail = offset + CHECKSUM_BYTE_SIZE;
+         if (len > tail) {
+            shiftBytesDown(tail, len - tail, CHECKSUM_BYTE_SIZE);
+         }
+         setFlagNoVersion(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM, false);
+         setLength(len - CHECKSUM_BYTE_SIZE);
+      }
+   }
+
+   /**
+    * In incremental mode, {@link ByteObject#getCheckSum()} only hashes the blocks written since its last call.
+    * <br>
+    * <br>
+    * Writes done with the set methods are tracked. Code writing directly into the byte array must
+    * call {@link ByteObject#checksumDirty(int, int)}.
+    * <br>
+    * Change of array, index or length triggers a full hash.
+    * <br>
+    * Costs 4 bytes by block of {@link ByteObjectChecksum#BLOCK_SIZE_DEFAULT} bytes.
+    * @param v
+    */
+   public void setChecksumIncremental(boolean v) {
+      if (v) {
+         if (checksum == null) {
+            checksum = new ByteObjectChecksum(boc);
+         }
+      } else {
+         checksum = null;
+      }
+   }
+
    public void setDynBOParamValues(int index, int[] values) {
       setDynBOParamValues(index, values, 0, values.length);
    }
@@ -2534,6 +3106,7 @@ public class ByteObject implements IByteObject, IStringable {
     */
    public void setDynMaxFixedChars(int index, int numMax, char[] c, int offset, int len) {
       immutableCheck();
+      checksumDirty(index, numMax * 2);
       int value = 0;
       for (int i = 0; i < numMax; i++) {
          if (i < len && offset + i < c.length) {
@@ -2676,6 +3249,7 @@ public class ByteObject implements IByteObject, IStringable {
       immutableCheck();
       increaseVersionCount();
       data[this.index + index] = (byte) BitUtils.setFlag(data[this.index + index] & 0xFF, flag, v);
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2687,6 +3261,7 @@ public class ByteObject implements IByteObject, IStringable {
    public void setFlagNoVersion(int index, int flag, boolean v) {
       immutableCheck();
       data[this.index + index] = (byte) BitUtils.setFlag(data[this.index + index] & 0xFF, flag, v);
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2709,13 +3284,17 @@ public class ByteObject implements IByteObject, IStringable {
     * <li> {@link ByteObject#set1(int, int)}
     * 
     * TODO compute a checksum and store it?
+    * <br>
+    * Immutable {@link ByteObject}s may then be shared with {@link ByteObjectInterner#intern(ByteObject)}
     */
    public void setImmutable() {
       setFlagNoVersion(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_7_IMMUTABLE, true);
    }
 
    private void setInt(int index, int value) {
+      writeBegin();
       IntUtils.writeIntBE(data, this.index + index, value);
+      checksumDirty(index, 4);
    }
 
    /**
@@ -2756,20 +3335,30 @@ public class ByteObject implements IByteObject, IStringable {
     * Sets the {@link IByteObject#A_OBJECT_OFFSET_3_LENGTH2}. The constructor must set this field.
     * <br>
     * <br>
+    * When length is extended, sets {@link IByteObject#A_OBJECT_OFFSET_4_LENGTH_EXT4}
     * 
     * @param size
     */
    protected void setLength(int size) {
-      set2Unsigned(A_OBJECT_OFFSET_3_LENGTH2, size);
+      if (isLengthExtended()) {
+         immutableCheck();
+         setInt(A_OBJECT_OFFSET_4_LENGTH_EXT4, size);
+      } else {
+         set2Unsigned(A_OBJECT_OFFSET_3_LENGTH2, size);
+      }
    }
 
    private void setLong(int index, long value) {
+      writeBegin();
       LongUtils.writeLongBE(data, this.index + index, value);
+      checksumDirty(index, 8);
    }
 
    public void setSerializedNumParam(int num) {
+      writeBegin();
       int offset = getSerialziedOffset();
       ShortUtils.writeShortBEUnsigned(data, index + offset + 1, num);
+      checksumDirty(offset + 1, 2);
    }
 
    /**
@@ -2778,11 +3367,13 @@ public class ByteObject implements IByteObject, IStringable {
     * @param value
     */
    private void setShortInt(int index, int value) {
+      writeBegin();
       if (value < 0) {
          value = -value;
          value |= (MINUS_SIGN_16BITS_FLAG);
       }
       ShortUtils.writeShortBEUnsigned(data, this.index + index, value);
+      checksumDirty(index, 2);
    }
 
    /**
@@ -2798,6 +3389,8 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public void setSub(ByteObject bo, int index) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       param[index] = bo;
    }
@@ -2812,6 +3405,8 @@ public class ByteObject implements IByteObject, IStringable {
     * @param value
     */
    public void setSubIndexed(ByteObject bo, int index, int value) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       int addy = getValue(index, value);
       if (addy == 0) {
@@ -2852,6 +3447,8 @@ public class ByteObject implements IByteObject, IStringable {
    }
 
    public void setSubs(ByteObject[] subs) {
+      loadParams();
+      invalidateSubIndex();
       immutableCheck();
       this.param = subs;
    }
@@ -2902,6 +3499,7 @@ public class ByteObject implements IByteObject, IStringable {
          setShortInt(index, value);
       } else if (size == 3) {
          IntUtils.writeInt24BE(data, this.index + index, value);
+         checksumDirty(index, 3);
       } else {
          setInt(index, value);
       }
@@ -2917,6 +3515,7 @@ public class ByteObject implements IByteObject, IStringable {
       immutableCheck();
       increaseVersionCount();
       data[this.index + index] = (byte) ((data[this.index + index] & ~(0x03 << pos)) + ((value & 0x03) << pos));
+      checksumDirty(index, 1);
    }
 
    public void setValue2Bits1(int index, int value) {
@@ -2939,12 +3538,14 @@ public class ByteObject implements IByteObject, IStringable {
       immutableCheck();
       increaseVersionCount();
       data[this.index + index] = (byte) ((data[this.index + index] & ~(0x0F << 0)) + ((value & 0x0F) << 0));
+      checksumDirty(index, 1);
    }
 
    public void setValue4Bits2(int index, int value) {
       immutableCheck();
       increaseVersionCount();
       data[this.index + index] = (byte) ((data[this.index + index] & ~(0x0F << 4)) + ((value & 0x0F) << 4));
+      checksumDirty(index, 1);
    }
 
    /**
@@ -2960,6 +3561,7 @@ public class ByteObject implements IByteObject, IStringable {
          setShortInt(index, value);
       } else if (size == 3) {
          IntUtils.writeInt24BE(data, this.index + index, value);
+         checksumDirty(index, 3);
       } else {
          setInt(index, value);
       }
@@ -3006,7 +3608,9 @@ public class ByteObject implements IByteObject, IStringable {
     * @param shiftSize
     */
    public void shiftBytesDown(int offset, int len, int shiftSize) {
+      writeBegin();
       boc.getUC().getBU().shiftBytesDown(data, shiftSize, index + offset, index + offset + len - 1);
+      checksumDirty(offset - shiftSize, len + shiftSize);
    }
 
    /**
@@ -3018,7 +3622,9 @@ public class ByteObject implements IByteObject, IStringable {
     * @param shiftSize
     */
    public void shiftBytesUp(int offset, int len, int shiftSize) {
+      writeBegin();
       boc.getUC().getBU().shiftBytesUp(data, shiftSize, index + offset, index + offset + len - 1);
+      checksumDirty(offset, len + shiftSize);
    }
 
    /**
@@ -3097,23 +3703,7 @@ public class ByteObject implements IByteObject, IStringable {
       IntToObjects topology = getTopology(globalrefs);
 
       //compute the total size need by all the objects
-      int sizeTotal = 0;
-      for (int i = 0; i < topology.nextempty; i++) {
-         //object to serialize
-         ByteObject bo = ((ByteObject) topology.objects[i]);
-         //magic byte
-         if (bo != null) {
-            sizeTotal += bo.getLength();
-            boolean isNotSerialized = !bo.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_4_SERIALIZED);
-            if (bo.param != null && isNotSerialized) {
-               //2 byte for number of sub params +1 for magic byte
-               sizeTotal += TRAILER_LENGTH;
-            }
-         } else {
-            //1 + 4 bytes for reference
-            sizeTotal += 5;
-         }
-      }
+      int sizeTotal = getSerializedSize(topology);
       byte[] bytes = new byte[sizeTotal];
 
       int offset = 0;
@@ -3196,6 +3786,21 @@ public class ByteObject implements IByteObject, IStringable {
       return bytes;
    }
 
+   /**
+    * Writes {@link ByteObject#getCheckSum()} in the trailer field.
+    * <br>
+    * Does nothing when {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM} is not set.
+    * <br>
+    * Not a modification. No version count increment, no immutability check.
+    */
+   public void updateChecksum() {
+      if (hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+         int crc = getCheckSum();
+         writeBegin();
+         IntUtils.writeIntBE(data, index + getSuffixChecksumOffset(), crc);
+      }
+   }
+
    //#mdebug
    public IDLog toDLog() {
       return boc.toDLog();
@@ -3209,6 +3814,7 @@ public class ByteObject implements IByteObject, IStringable {
     * To String of a byte Object
     */
    public void toString(Dctx dc) {
+      loadParams();
       dc.root(this, ByteObject.class, 3050);
       if (toStringName != null) {
          dc.appendBracketedWithSpace(toStringName);
@@ -3261,6 +3867,7 @@ public class ByteObject implements IByteObject, IStringable {
     * @return
     */
    public void toStringBackUp(Dctx dc) {
+      loadParams();
       dc.append("Header Type=" + get1(A_OBJECT_OFFSET_1_TYPE1) + " Length=" + getLength() + " [ByteField=" + get2(A_OBJECT_OFFSET_3_LENGTH2) + "]");
       if (!dc.hasFlagToStringUC(IToStringFlagsUC.FLAG_UC_05_NO_ABSOLUTES)) {
          dc.append(" #Index=" + index + " Len=" + data.length + " ");
@@ -3284,8 +3891,8 @@ public class ByteObject implements IByteObject, IStringable {
       } else {
          sb.nl();
          sb.append("Flags=");
-         if (this.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_)) {
-            sb.append(" NOTUSED");
+         if (this.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_1_CHECKSUM)) {
+            sb.append(" Checksum");
          }
          if (this.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_2_VARIABLE_SIZE)) {
             sb.append(" VariableSize");
@@ -3347,7 +3954,7 @@ public class ByteObject implements IByteObject, IStringable {
    public void toStringHeader(Dctx sb) {
       sb.root(this, "#ByteObjectHeader");
       ByteObjectUtilz bou = boc.getBOU();
-      bou.toStringAppend(sb, this, "Incomplete", A_OBJECT_FLAG_1_);
+      bou.toStringAppend(sb, this, "Checksum", A_OBJECT_FLAG_1_CHECKSUM);
       bou.toStringAppend(sb, this, "VariableSize", A_OBJECT_FLAG_2_VARIABLE_SIZE);
       bou.toStringAppend(sb, this, "Versioning", A_OBJECT_FLAG_3_VERSIONING);
       bou.toStringAppend(sb, this, "MemoryPinned", A_OBJECT_FLAG_8_TAILER);
@@ -5,9 +5,12 @@
 package pasa.cbentley.byteobjects.src4.core;
 
 import pasa.cbentley.byteobjects.src4.core.interfaces.IBOArray;
+import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObjectVisitor;
 import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
 import pasa.cbentley.byteobjects.src4.ctx.IBOTypesBOC;
+import pasa.cbentley.byteobjects.src4.objects.litteral.IBOLitteral;
 import pasa.cbentley.core.src4.helpers.BytesIterator;
+import pasa.cbentley.core.src4.utils.BitUtils;
 
 /**
  * Generic implementation.
@@ -20,16 +23,146 @@ import pasa.cbentley.core.src4.helpers.BytesIterator;
  * 
  * When objects have variable width, {@link ByteObjectArray#getByteObjectAt(int)} is costly
  * unless an index is built and attached
+ * <br>
+ * <br>
+ * The offset index is built lazily by {@link ByteObjectArray#getOffsetOf(int)} and cached.
+ * It is rebuilt when the data array, the length or the number of elements change.
+ * <br>
+ * {@link ByteObjectArray#attachOffsetIndex()} adds it as a {@link IBOTypesBOC#TYPE_026_INDEX} param
+ * so that it is serialized with the array and read back instead of being recomputed.
+ * The attached index ends with the length of the array it was built for and is ignored when that length differs.
+ * <br>
+ * <br>
+ * Full scans should use a {@link ByteObjectCursor} with {@link ByteObjectArray#forEach(IByteObjectVisitor)}
+ * or {@link ByteObjectArray#getByteObjectAt(int, ByteObjectCursor)}. No {@link ByteObject} is created per element.
  * 
  * @author Charles Bentley
  *
  */
 public class ByteObjectArray extends ByteObject implements IBOArray {
 
+   /**
+    * Number of valid entries in {@link ByteObjectArray#offsetIndex}
+    */
+   private int    offsetIndexCount;
+
+   /**
+    * Offsets of variable size elements, relative to {@link ByteObject#index}.
+    * <br>
+    * null when not yet built.
+    */
+   private int[]  offsetIndex;
+
+   private byte[] offsetIndexData;
+
+   private int    offsetIndexLength;
+
+   private int    offsetIndexStart;
+
    public ByteObjectArray(BOCtx boc, byte[] data) {
       super(boc, data);
    }
 
+   /**
+    * Builds the whole offset index and sets it as a {@link IBOTypesBOC#TYPE_026_INDEX} param.
+    * <br>
+    * <br>
+    * The index is thus serialized with the array by {@link ByteObject#toByteArray()}.
+    * <br>
+    * Does nothing for fixed size elements.
+    * <br>
+    * The values are the offsets of the elements followed by the length of the array.
+    * <br>
+    * Call again after modifying the size of elements in place.
+    */
+   public void attachOffsetIndex() {
+      if (!hasFlag(BOA_OFFSET_02_FLAG1, BOA_FLAG_1_VARIABLE_SIZE)) {
+         return;
+      }
+      int size = getSizeArray();
+      if (size == 0) {
+         return;
+      }
+      int[] offsets = getOffsetIndex(size - 1, size);
+      int[] values = new int[size + 1];
+      System.arraycopy(offsets, 0, values, 0, size);
+      values[size] = getLength();
+      int max = BitUtils.getMaxByteSize(values);
+      int len = IBOLitteral.LITTERAL_ARRAY_BASIC_SIZE + (max * values.length);
+      ByteObject indexBo = new ByteObject(boc, IBOTypesBOC.TYPE_026_INDEX, len);
+      indexBo.setDynOverWriteValues(IBOLitteral.LITTERAL_OFFSET_ARRAY, values, 0, values.length, max);
+      int pos = getSubFirstIndex(IBOTypesBOC.TYPE_026_INDEX);
+      if (pos == -1) {
+         addByteObject(indexBo);
+      } else {
+         setSub(indexBo, pos);
+      }
+   }
+
+   /**
+    * Offset index valid at least up to index.
+    * <br>
+    * <br>
+    * Uses the cache, then an attached {@link IBOTypesBOC#TYPE_026_INDEX} param, then walks the elements
+    * from the last known offset.
+    * @param index
+    * @param size number of elements
+    * @return
+    */
+   private int[] getOffsetIndex(int index, int size) {
+      int len = getLength();
+      if (offsetIndex == null || offsetIndexData != data || offsetIndexStart != this.index || offsetIndexLength != len || offsetIndex.length != size) {
+         offsetIndexData = data;
+         offsetIndexStart = this.index;
+         offsetIndexLength = len;
+         offsetIndex = null;
+         ByteObject attached = getSubFirst(IBOTypesBOC.TYPE_026_INDEX);
+         if (attached != null) {
+            int[] values = attached.getValues(IBOLitteral.LITTERAL_OFFSET_ARRAY);
+            //built for the same number of elements and the same length
+            if (values.length == size + 1 && values[size] == len) {
+               offsetIndex = new int[size];
+               System.arraycopy(values, 0, offsetIndex, 0, size);
+               offsetIndexCount = size;
+            }
+         }
+         if (offsetIndex == null) {
+            offsetIndex = new int[size];
+            offsetIndex[0] = BOA_OFFSET_05_NUM_ELEMENTS4;
+            offsetIndexCount = 1;
+         }
+      }
+      //extends the index from the last known element
+      int offset = this.index + offsetIndex[offsetIndexCount - 1];
+      while (offsetIndexCount <= index) {
+         int sizeIndexedByteObject = getShortIntUnSigned(offset + 2);
+         if (sizeIndexedByteObject == 0) {
+            //invalid.. this array only accept "small objects" 
+            throw new IllegalStateException("");
+         } else {
+            offset += sizeIndexedByteObject;
+         }
+         offsetIndex[offsetIndexCount++] = offset - this.index;
+      }
+      return offsetIndex;
+   }
+
+   /**
+    * Drops the cached and attached offset index.
+    * <br>
+    * <br>
+    * Needed after the size of any element is modified in place, whether the length of the array changes or not.
+    * A change of length alone makes the attached index ignored, but it stays serialized with the array until dropped
+    * or attached again.
+    */
+   public void invalidateOffsetIndex() {
+      offsetIndex = null;
+      int pos = getSubFirstIndex(IBOTypesBOC.TYPE_026_INDEX);
+      if (pos != -1) {
+         setSub(null, pos);
+      }
+   }
+
    public int getSizeArray() {
       return get4(BOA_OFFSET_05_NUM_ELEMENTS4);
    }
@@ -44,21 +177,73 @@ public class ByteObjectArray extends ByteObject implements IBOArray {
       return new ByteObject(boc, data, offset);
    }
 
+   /**
+    * Moves cursor to the element at index.
+    * <br>
+    * <br>
+    * No object creation.
+    * @param index
+    * @param cursor created with {@link ByteObjectArray#getCursor()}
+    * @return cursor
+    */
+   public ByteObject getByteObjectAt(int index, ByteObjectCursor cursor) {
+      int offset = getOffsetOf(index);
+      cursor.setPosition(data, offset);
+      return cursor;
+   }
+
+   /**
+    * Creates a {@link ByteObjectCursor} over the data of this array.
+    * @return
+    */
+   public ByteObjectCursor getCursor() {
+      return new ByteObjectCursor(boc, data);
+   }
+
+   /**
+    * Visits all the elements of the array in order with a single {@link ByteObjectCursor}.
+    * @param visitor
+    * @return the number of elements visited
+    */
+   public int forEach(IByteObjectVisitor visitor) {
+      return forEach(visitor, 0, getSizeArray() - 1);
+   }
+
+   /**
+    * Visits the elements from indexStart to indexEnd with a single {@link ByteObjectCursor}.
+    * <br>
+    * <br>
+    * Stops when {@link IByteObjectVisitor#visit(ByteObject, int)} returns false.
+    * @param visitor
+    * @param indexStart inclusive
+    * @param indexEnd inclusive
+    * @return the number of elements visited
+    */
+   public int forEach(IByteObjectVisitor visitor, int indexStart, int indexEnd) {
+      if (indexEnd < indexStart) {
+         return 0;
+      }
+      int offset = getOffsetOf(indexStart);
+      ByteObjectCursor cursor = getCursor();
+      int count = 0;
+      for (int i = indexStart; i <= indexEnd; i++) {
+         cursor.setPosition(offset);
+         count++;
+         if (!visitor.visit(cursor, i)) {
+            break;
+         }
+         offset += cursor.getLength();
+      }
+      return count;
+   }
+
    public int getOffsetOf(int index) {
       int size = getSizeArray();
       int offset = this.index + BOA_OFFSET_05_NUM_ELEMENTS4;
       if (index >= 0 && index < size) {
          if (hasFlag(BOA_OFFSET_02_FLAG1, BOA_FLAG_1_VARIABLE_SIZE)) {
-            for (int i = 0; i < index; i++) {
-               int sizeIndexedByteObject = getShortIntUnSigned(offset + 2);
-               if (sizeIndexedByteObject == 0) {
-                  //invalid.. this array only accept "small objects" 
-                  throw new IllegalStateException("");
-               } else {
-                  offset += sizeIndexedByteObject;
-               }
-            }
-            return offset;
+            int[] offsets = getOffsetIndex(index, size);
+            return this.index + offsets[index];
          } else {
             int byteSize = getShortIntUnSigned(BOA_OFFSET_06_SIZE_ELEMENT2);
             return offset + (byteSize * index);
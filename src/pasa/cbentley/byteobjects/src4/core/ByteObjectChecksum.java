@@ -0,0 +1,315 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * CRC32C (Castagnoli) checksums of {@link ByteObject} byte ranges.
+ * <br>
+ * <br>
+ * Static methods {@link ByteObjectChecksum#update(int, byte[], int, int)} and {@link ByteObjectChecksum#combine(int, int, int)}
+ * work on final CRC values. The CRC of 0 bytes is 0. Thus
+ * <li> update(update(0, a), b) is the CRC of a followed by b
+ * <li> combine(crc(a), crc(b), len(b)) is the CRC of a followed by b
+ * <br>
+ * <br>
+ * An instance is the incremental mode of {@link ByteObject#getCheckSum()}. The byte range is cut in blocks
+ * of {@link ByteObjectChecksum#getBlockSize()} bytes whose CRCs are kept.
+ * <br>
+ * Mutators of {@link ByteObject} call {@link ByteObjectChecksum#setDirty(int, int)}. Only dirty blocks are hashed again.
+ * The block CRCs are then combined into the CRC of the whole range.
+ * <br>
+ * <br>
+ * When the byte array, the index or the length of the range changes, all blocks are hashed again.
+ * <br>
+ * <br>
+ * Not thread safe.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectChecksum extends ObjectBoc {
+
+   public static final int    BLOCK_SIZE_DEFAULT = 256;
+
+   /**
+    * Reversed Castagnoli polynomial 0x1EDC6F41
+    */
+   public static final int    POLY_CRC32C        = 0x82F63B78;
+
+   private static final int[] TABLE              = new int[256];
+
+   static {
+      for (int i = 0; i < 256; i++) {
+         int c = i;
+         for (int k = 0; k < 8; k++) {
+            if ((c & 1) != 0) {
+               c = (c >>> 1) ^ POLY_CRC32C;
+            } else {
+               c = c >>> 1;
+            }
+         }
+         TABLE[i] = c;
+      }
+   }
+
+   /**
+    * CRC of the data of crc1 followed by data of length len2 whose CRC is crc2.
+    * <br>
+    * Zlib's method of applying the zero bytes operator with GF(2) matrices.
+    * @param crc1
+    * @param crc2
+    * @param len2
+    * @return
+    */
+   public static int combine(int crc1, int crc2, int len2) {
+      if (len2 <= 0) {
+         return crc1;
+      }
+      int[] even = new int[32];
+      int[] odd = new int[32];
+      //operator for one zero bit
+      odd[0] = POLY_CRC32C;
+      int row = 1;
+      for (int n = 1; n < 32; n++) {
+         odd[n] = row;
+         row <<= 1;
+      }
+      //2 zero bits
+      gf2Square(even, odd);
+      //4 zero bits
+      gf2Square(odd, even);
+      //apply len2 zero bytes to crc1. first square puts the operator for one zero byte in even
+      do {
+         gf2Square(even, odd);
+         if ((len2 & 1) != 0) {
+            crc1 = gf2Times(even, crc1);
+         }
+         len2 >>>= 1;
+         if (len2 == 0) {
+            break;
+         }
+         gf2Square(odd, even);
+         if ((len2 & 1) != 0) {
+            crc1 = gf2Times(odd, crc1);
+         }
+         len2 >>>= 1;
+      } while (len2 != 0);
+      return crc1 ^ crc2;
+   }
+
+   /**
+    * CRC32C of the bytes
+    * @param data
+    * @param offset
+    * @param len
+    * @return
+    */
+   public static int crc32c(byte[] data, int offset, int len) {
+      return update(0, data, offset, len);
+   }
+
+   private static void gf2Square(int[] square, int[] mat) {
+      for (int n = 0; n < 32; n++) {
+         square[n] = gf2Times(mat, mat[n]);
+      }
+   }
+
+   private static int gf2Times(int[] mat, int vec) {
+      int sum = 0;
+      int i = 0;
+      while (vec != 0) {
+         if ((vec & 1) != 0) {
+            sum ^= mat[i];
+         }
+         vec >>>= 1;
+         i++;
+      }
+      return sum;
+   }
+
+   /**
+    * Continues crc with len bytes.
+    * @param crc CRC of the preceding bytes. 0 to start
+    * @param data
+    * @param offset
+    * @param len
+    * @return
+    */
+   public static int update(int crc, byte[] data, int offset, int len) {
+      int c = ~crc;
+      int end = offset + len;
+      for (int i = offset; i < end; i++) {
+         c = TABLE[(c ^ data[i]) & 0xFF] ^ (c >>> 8);
+      }
+      return ~c;
+   }
+
+   private int[]  blockCrcs;
+
+   private int    blockSize;
+
+   /**
+    * Bit set of blocks to hash again
+    */
+   private int[]  dirty;
+
+   private int    numBlocks;
+
+   /**
+    * Number of blocks hashed since creation
+    */
+   private int    numHashed;
+
+   /**
+    * Zero bytes operator of {@link ByteObjectChecksum#blockSize}
+    */
+   private int[]  shiftBlock;
+
+   private byte[] snapData;
+
+   private int    snapIndex;
+
+   private int    snapLen;
+
+   public ByteObjectChecksum(BOCtx boc) {
+      this(boc, BLOCK_SIZE_DEFAULT);
+   }
+
+   /**
+    *
+    * @param boc
+    * @param blockSize number of bytes by block
+    */
+   public ByteObjectChecksum(BOCtx boc, int blockSize) {
+      super(boc);
+      if (blockSize <= 0) {
+         throw new IllegalArgumentException("blockSize " + blockSize);
+      }
+      this.blockSize = blockSize;
+      shiftBlock = new int[32];
+      for (int i = 0; i < 32; i++) {
+         shiftBlock[i] = combine(1 << i, 0, blockSize);
+      }
+   }
+
+   public int getBlockSize() {
+      return blockSize;
+   }
+
+   /**
+    * CRC32C of len bytes at index in data. Only dirty blocks are hashed.
+    * @param data
+    * @param index
+    * @param len
+    * @return
+    */
+   public int getChecksum(byte[] data, int index, int len) {
+      if (data != snapData || index != snapIndex || len != snapLen) {
+         reset(data, index, len);
+      }
+      int crc = 0;
+      int offset = index;
+      for (int b = 0; b < numBlocks; b++) {
+         int blen = blockSize;
+         if (b == numBlocks - 1) {
+            blen = len - b * blockSize;
+         }
+         if ((dirty[b >> 5] & (1 << (b & 31))) != 0) {
+            blockCrcs[b] = update(0, data, offset, blen);
+            dirty[b >> 5] &= ~(1 << (b & 31));
+            numHashed++;
+         }
+         if (b == 0) {
+            crc = blockCrcs[0];
+         } else if (blen == blockSize) {
+            crc = gf2Times(shiftBlock, crc) ^ blockCrcs[b];
+         } else {
+            crc = combine(crc, blockCrcs[b], blen);
+         }
+         offset += blen;
+      }
+      return crc;
+   }
+
+   public int getNumHashed() {
+      return numHashed;
+   }
+
+   /**
+    * Forces a full hash on the next call to {@link ByteObjectChecksum#getChecksum(byte[], int, int)}
+    */
+   public void invalidate() {
+      snapData = null;
+   }
+
+   private void reset(byte[] data, int index, int len) {
+      snapData = data;
+      snapIndex = index;
+      snapLen = len;
+      numBlocks = (len + blockSize - 1) / blockSize;
+      if (blockCrcs == null || blockCrcs.length < numBlocks) {
+         blockCrcs = new int[numBlocks];
+         dirty = new int[(numBlocks + 31) >> 5];
+      }
+      for (int i = 0; i < dirty.length; i++) {
+         dirty[i] = -1;
+      }
+   }
+
+   /**
+    * Flags the blocks of len bytes at offset to be hashed again.
+    * <br>
+    * Bytes outside the tracked range are ignored.
+    * @param offset relative to the start of the tracked range
+    * @param len
+    */
+   public void setDirty(int offset, int len) {
+      if (snapData == null) {
+         return;
+      }
+      int start = offset;
+      int end = offset + len;
+      if (start < 0) {
+         start = 0;
+      }
+      if (end > snapLen) {
+         end = snapLen;
+      }
+      if (start >= end) {
+         return;
+      }
+      int first = start / blockSize;
+      int last = (end - 1) / blockSize;
+      for (int b = first; b <= last; b++) {
+         dirty[b >> 5] |= 1 << (b & 31);
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectChecksum.class, 270);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("blockSize", blockSize);
+      dc.appendVarWithSpace("numBlocks", numBlocks);
+      dc.appendVarWithSpace("numHashed", numHashed);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectChecksum.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -0,0 +1,68 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObjectVisitor;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Flyweight {@link ByteObject} view whose index is moved over the elements of a byte array.
+ * <br>
+ * <br>
+ * Used to scan {@link ByteObjectArray} and {@link ByteObjectIterator} without creating a {@link ByteObject} per element.
+ * <br>
+ * <li> {@link ByteObjectArray#getByteObjectAt(int, ByteObjectCursor)}
+ * <li> {@link ByteObjectArray#forEach(IByteObjectVisitor)}
+ * <li> {@link ByteObjectIterator#getNext(ByteObjectCursor)}
+ * <br>
+ * <br>
+ * A cursor has no params. Never keep a reference to it as an element, the next move changes its content.
+ * <br>
+ * Not thread safe.
+ * 
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectCursor extends ByteObject {
+
+   public ByteObjectCursor(BOCtx boc, byte[] data) {
+      super(boc);
+      this.data = data;
+   }
+
+   /**
+    * Moves the view to the {@link ByteObject} starting at offset in the current array.
+    * @param offset absolute offset in the array
+    */
+   public void setPosition(int offset) {
+      this.index = offset;
+   }
+
+   /**
+    * Moves the view to another array.
+    * @param data
+    * @param offset absolute offset in the array
+    */
+   public void setPosition(byte[] data, int offset) {
+      this.data = data;
+      this.index = offset;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectCursor.class, 60);
+      dc.appendVarWithSpace("index", index);
+      super.toString(dc.sup());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectCursor.class);
+      dc.appendVarWithSpace("index", index);
+      super.toString1Line(dc.sup1Line());
+   }
+   //#enddebug
+
+}
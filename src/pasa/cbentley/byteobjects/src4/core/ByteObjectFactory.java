@@ -12,6 +12,7 @@ import pasa.cbentley.core.src4.io.BADataIS;
 import pasa.cbentley.core.src4.logging.Dctx;
 import pasa.cbentley.core.src4.structs.IntToObjects;
 import pasa.cbentley.core.src4.utils.IntUtils;
+import pasa.cbentley.core.src4.utils.ShortUtils;
 
 /**
  * ByteObject<b>C</b>reator. (Factory, Builder)
@@ -99,6 +100,44 @@ public class ByteObjectFactory extends BOAbstractFactory implements IByteObject
       return bo;
    }
 
+   /**
+    * Lazy version of {@link ByteObjectFactory#createByteObjectFromWrap(byte[], int)}.
+    * <br>
+    * <br>
+    * Only the root {@link ByteObject} is created over the shared data array.
+    * <br>
+    * Offsets of the sub objects are recorded in a {@link ByteObjectLazyTable} and the params are created
+    * on first access by {@link ByteObject#getSubAtIndex(int)}, {@link ByteObject#getSubFirst(int)}, {@link ByteObject#getSubOrder(int, int)}
+    * and other sub methods.
+    * <br>
+    * <br>
+    * Loading a big serialized configuration thus costs the number of touched nodes instead of the whole graph.
+    * <br>
+    * Data is validated like the eager unwrap.
+    * @param data
+    * @param index
+    * @return
+    * @throws IllegalArgumentException when data is malformed
+    */
+   public ByteObject createByteObjectFromWrapLazy(byte[] data, int index) {
+      ByteObjectLazyTable table = new ByteObjectLazyTable(boc, data, index);
+      return table.getRoot();
+   }
+
+   /**
+    * See {@link ByteObjectFactory#createByteObjectFromWrapLazy(byte[], int)}
+    * <br>
+    * <br>
+    * bc is moved after the serialized graph.
+    * @param bc
+    * @return
+    */
+   public ByteObject createByteObjectFromWrapLazy(BytesIterator bc) {
+      ByteObjectLazyTable table = new ByteObjectLazyTable(boc, bc.getArray(), bc.getPosition());
+      bc.incrementBy(table.getLength());
+      return table.getRoot();
+   }
+
    public ByteObject createByteObject(int type, int size) {
       byte[] data = new byte[size];
       data[A_OBJECT_OFFSET_1_TYPE1] = (byte) type;
@@ -107,6 +146,31 @@ public class ByteObjectFactory extends BOAbstractFactory implements IByteObject
       return bo;
    }
 
+   /**
+    * Creates a {@link ByteObject} whose length is coded on 4 bytes. 
+    * <br>
+    * <br>
+    * For payloads bigger than 0xFFFF bytes that do not need a {@link ByteObjectManaged} agent header.
+    * <br>
+    * Fields start at {@link IByteObject#A_OBJECT_EXTENDED_BASIC_SIZE}.
+    * <br>
+    * See {@link IByteObject#A_OBJECT_LENGTH_EXTENDED}
+    * @param type
+    * @param size total size, header included
+    * @return
+    * @throws IllegalArgumentException when size is smaller than the header
+    */
+   public ByteObject createByteObjectExtended(int type, int size) {
+      if (size < A_OBJECT_EXTENDED_BASIC_SIZE) {
+         throw new IllegalArgumentException("size " + size);
+      }
+      byte[] data = new byte[size];
+      data[A_OBJECT_OFFSET_1_TYPE1] = (byte) type;
+      ShortUtils.writeShortBEUnsigned(data, A_OBJECT_OFFSET_3_LENGTH2, A_OBJECT_LENGTH_EXTENDED);
+      IntUtils.writeIntBE(data, A_OBJECT_OFFSET_4_LENGTH_EXT4, size);
+      return new ByteObject(boc, data, 0);
+   }
+
    /**
     * {@link IBOTypesBOC#TYPE_020_PARAMATERS}
     * 
@@ -156,7 +220,8 @@ public class ByteObjectFactory extends BOAbstractFactory implements IByteObject
          int length = bo.getLength();
          //flag object as unwrapped- so next time it is toByteArray, just return the byte array
          //verify data not corrupted
-         if (length == 0xFFFF) {
+         //the 2 bytes field and not the length, an extended object may be 0xFFFF bytes long
+         if (bo.getShortIntUnSigned(A_OBJECT_OFFSET_3_LENGTH2) == A_OBJECT_LENGTH_OVERRIDE) {
             //we have a ByteObjectManaged.
             bo = new ByteObjectManaged(boc, bc.getArray(), bc.getPosition());
             length = bo.getLength();
@@ -212,7 +277,8 @@ public class ByteObjectFactory extends BOAbstractFactory implements IByteObject
          int length = bo.getLength();
          //flag object as unwrapped- so next time it is toByteArray, just return the byte array
          //verify data not corrupted
-         if (length == 0xFFFF) {
+         //the 2 bytes field and not the length, an extended object may be 0xFFFF bytes long
+         if (bo.getShortIntUnSigned(A_OBJECT_OFFSET_3_LENGTH2) == A_OBJECT_LENGTH_OVERRIDE) {
             //we have a ByteObjectManaged.
             bo = new ByteObjectManaged(boc, bc.getArray(), bc.getPosition());
             length = bo.getLength();
@@ -260,6 +326,21 @@ public class ByteObjectFactory extends BOAbstractFactory implements IByteObject
       return createByteObjectFromWrap(data, 0);
    }
 
+   /**
+    * Lazy version of {@link ByteObjectFactory#serializeReverse(BADataIS)}
+    * @param dis
+    * @return
+    */
+   public ByteObject serializeReverseLazy(BADataIS dis) {
+      //read 4 bytes LE
+      byte[] header = new byte[4];
+      dis.read(header);
+      int len = IntUtils.readIntBE(header, 0);
+      byte[] data = new byte[len];
+      dis.read(data);
+      return createByteObjectFromWrapLazy(data, 0);
+   }
+
    //#mdebug
    public void toString(Dctx dc) {
       dc.root(this, "ByteObjectFactory");
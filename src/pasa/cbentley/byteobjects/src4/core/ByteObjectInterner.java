@@ -0,0 +1,382 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import java.lang.ref.WeakReference;
+
+import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObject;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Pool of canonical {@link ByteObject}s flagged {@link IByteObject#A_OBJECT_FLAG_7_IMMUTABLE}.
+ * <br>
+ * <br>
+ * {@link ByteObjectInterner#intern(ByteObject)} returns the pooled instance with the same bytes and the same sub {@link ByteObject}s.
+ * Subs are interned first, so content identical graphs end up sharing all their instances.
+ * <br>
+ * Two interned {@link ByteObject}s are thus equal if and only if they are the same reference.
+ * <br>
+ * <br>
+ * Key of a {@link ByteObject} is
+ * <li> its bytes, header included
+ * <li> the identity of each of its params. null params are part of the key
+ * <br>
+ * <br>
+ * Mutable {@link ByteObject}s are returned as is and never pooled.
+ * <br>
+ * Immutable graphs must not have cycles.
+ * <br>
+ * <br>
+ * With weak references, the pool does not keep alive {@link ByteObject}s that are not referenced elsewhere.
+ * Cleared entries are removed lazily.
+ * <br>
+ * <br>
+ * Access is synchronized on the pool.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectInterner extends ObjectBoc implements IByteObject {
+
+   /**
+    * Head entry of each bucket. -1 when empty
+    */
+   private int[]    buckets;
+
+   private int      count;
+
+   /**
+    * Head of the free entry list. -1 when none
+    */
+   private int      free;
+
+   private int[]    hashes;
+
+   private boolean  isWeak;
+
+   private int[]    next;
+
+   private int      nextempty;
+
+   private int      numHits;
+
+   private int      numMisses;
+
+   /**
+    * {@link ByteObject} or {@link WeakReference} to a {@link ByteObject}
+    */
+   private Object[] refs;
+
+   public ByteObjectInterner(BOCtx boc) {
+      super(boc);
+      clear();
+   }
+
+   /**
+    * Empties the pool. Already interned instances stay valid.
+    */
+   public synchronized void clear() {
+      buckets = new int[16];
+      for (int i = 0; i < buckets.length; i++) {
+         buckets[i] = -1;
+      }
+      hashes = new int[16];
+      next = new int[16];
+      refs = new Object[16];
+      nextempty = 0;
+      count = 0;
+      free = -1;
+   }
+
+   /**
+    * Returns the entry of the pooled {@link ByteObject} equal to bo. -1 if none.
+    * @param bo
+    * @param hash
+    * @return
+    */
+   private int find(ByteObject bo, int hash) {
+      int bucket = hash & (buckets.length - 1);
+      int prev = -1;
+      int e = buckets[bucket];
+      while (e != -1) {
+         int nextEntry = next[e];
+         ByteObject pooled = getEntry(e);
+         if (pooled == null) {
+            //cleared weak reference
+            remove(bucket, prev, e);
+         } else {
+            if (hashes[e] == hash && isSame(pooled, bo)) {
+               return e;
+            }
+            prev = e;
+         }
+         e = nextEntry;
+      }
+      return -1;
+   }
+
+   /**
+    * Number of entries. With weak references, cleared entries not yet purged are counted.
+    * @return
+    */
+   public int getCount() {
+      return count;
+   }
+
+   private ByteObject getEntry(int e) {
+      Object o = refs[e];
+      if (o instanceof WeakReference) {
+         return (ByteObject) ((WeakReference) o).get();
+      }
+      return (ByteObject) o;
+   }
+
+   /**
+    * Hash of the bytes and the identity of the params
+    * @param bo
+    * @return
+    */
+   public int hash(ByteObject bo) {
+      byte[] data = bo.data;
+      int start = bo.index;
+      int end = start + bo.getLength();
+      int h = 1;
+      for (int i = start; i < end; i++) {
+         h = 31 * h + data[i];
+      }
+      ByteObject[] param = bo.param;
+      if (param != null) {
+         h = 31 * h + param.length;
+         for (int i = 0; i < param.length; i++) {
+            int ph = 0;
+            if (param[i] != null) {
+               ph = System.identityHashCode(param[i]);
+            }
+            h = 31 * h + ph;
+         }
+      }
+      //spread the bits for the power of 2 buckets
+      return h ^ (h >>> 16);
+   }
+
+   /**
+    * Returns the canonical instance of bo.
+    * <br>
+    * <br>
+    * Params of bo that are immutable are replaced by their canonical instance.
+    * <br>
+    * When bo is immutable and no equal {@link ByteObject} is pooled, bo is pooled and returned.
+    * @param bo
+    * @return bo itself when not immutable. null when bo is null
+    */
+   public synchronized ByteObject intern(ByteObject bo) {
+      if (bo == null || !bo.hasFlag(A_OBJECT_OFFSET_2_FLAG, A_OBJECT_FLAG_7_IMMUTABLE)) {
+         return bo;
+      }
+      bo.loadParams();
+      ByteObject[] param = bo.param;
+      if (param != null) {
+         boolean isChanged = false;
+         for (int i = 0; i < param.length; i++) {
+            ByteObject sub = intern(param[i]);
+            if (sub != param[i]) {
+               param[i] = sub;
+               isChanged = true;
+            }
+         }
+         if (isChanged) {
+            bo.invalidateSubIndex();
+         }
+      }
+      int hash = hash(bo);
+      int e = find(bo, hash);
+      if (e != -1) {
+         numHits++;
+         return getEntry(e);
+      }
+      numMisses++;
+      put(bo, hash);
+      return bo;
+   }
+
+   /**
+    * True when bo is the pooled instance
+    * @param bo
+    * @return
+    */
+   public synchronized boolean isInterned(ByteObject bo) {
+      if (bo == null) {
+         return false;
+      }
+      bo.loadParams();
+      int e = find(bo, hash(bo));
+      return e != -1 && getEntry(e) == bo;
+   }
+
+   /**
+    * Same bytes and same param references
+    * @param a
+    * @param b
+    * @return
+    */
+   private boolean isSame(ByteObject a, ByteObject b) {
+      if (a == b) {
+         return true;
+      }
+      int len = a.getLength();
+      if (len != b.getLength()) {
+         return false;
+      }
+      byte[] da = a.data;
+      byte[] db = b.data;
+      int ia = a.index;
+      int ib = b.index;
+      for (int i = 0; i < len; i++) {
+         if (da[ia + i] != db[ib + i]) {
+            return false;
+         }
+      }
+      ByteObject[] pa = a.param;
+      ByteObject[] pb = b.param;
+      if (pa == null || pb == null) {
+         return pa == pb;
+      }
+      if (pa.length != pb.length) {
+         return false;
+      }
+      for (int i = 0; i < pa.length; i++) {
+         if (pa[i] != pb[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   public boolean isWeak() {
+      return isWeak;
+   }
+
+   private void put(ByteObject bo, int hash) {
+      if ((count + 1) * 4 > buckets.length * 3) {
+         rehash(buckets.length << 1);
+      }
+      int e = free;
+      if (e != -1) {
+         free = next[e];
+      } else {
+         if (nextempty == refs.length) {
+            int size = refs.length << 1;
+            int[] nh = new int[size];
+            System.arraycopy(hashes, 0, nh, 0, nextempty);
+            hashes = nh;
+            int[] nn = new int[size];
+            System.arraycopy(next, 0, nn, 0, nextempty);
+            next = nn;
+            Object[] nr = new Object[size];
+            System.arraycopy(refs, 0, nr, 0, nextempty);
+            refs = nr;
+         }
+         e = nextempty++;
+      }
+      if (isWeak) {
+         refs[e] = new WeakReference(bo);
+      } else {
+         refs[e] = bo;
+      }
+      hashes[e] = hash;
+      int bucket = hash & (buckets.length - 1);
+      next[e] = buckets[bucket];
+      buckets[bucket] = e;
+      count++;
+   }
+
+   private void rehash(int size) {
+      int[] nb = new int[size];
+      for (int i = 0; i < size; i++) {
+         nb[i] = -1;
+      }
+      for (int i = 0; i < buckets.length; i++) {
+         int e = buckets[i];
+         while (e != -1) {
+            int nextEntry = next[e];
+            if (getEntry(e) == null) {
+               //purge cleared weak references
+               refs[e] = null;
+               next[e] = free;
+               free = e;
+               count--;
+            } else {
+               int bucket = hashes[e] & (size - 1);
+               next[e] = nb[bucket];
+               nb[bucket] = e;
+            }
+            e = nextEntry;
+         }
+      }
+      buckets = nb;
+   }
+
+   private void remove(int bucket, int prev, int e) {
+      if (prev == -1) {
+         buckets[bucket] = next[e];
+      } else {
+         next[prev] = next[e];
+      }
+      refs[e] = null;
+      next[e] = free;
+      free = e;
+      count--;
+   }
+
+   /**
+    * Switches the pool between strong and weak references. Existing entries are converted.
+    * @param v
+    */
+   public synchronized void setWeak(boolean v) {
+      if (v == isWeak) {
+         return;
+      }
+      isWeak = v;
+      for (int i = 0; i < nextempty; i++) {
+         Object o = refs[i];
+         if (o != null) {
+            if (v) {
+               refs[i] = new WeakReference(o);
+            } else {
+               //may be null. purged on next lookup
+               refs[i] = ((WeakReference) o).get();
+            }
+         }
+      }
+      if (!v) {
+         rehash(buckets.length);
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectInterner.class, 350);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("count", count);
+      dc.appendVarWithSpace("isWeak", isWeak);
+      dc.appendVarWithSpace("numHits", numHits);
+      dc.appendVarWithSpace("numMisses", numMisses);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectInterner.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -4,6 +4,7 @@
  */
 package pasa.cbentley.byteobjects.src4.core;
 
+import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObjectVisitor;
 import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
 import pasa.cbentley.core.src4.ctx.UCtx;
 import pasa.cbentley.core.src4.logging.Dctx;
@@ -39,6 +40,37 @@ public class ByteObjectIterator implements IStringable {
       currentOffset += bo.getLength();
       return bo;
    }
+
+   /**
+    * Moves cursor to the next {@link ByteObject} instead of creating a new one.
+    * @param cursor
+    * @return cursor
+    */
+   public ByteObject getNext(ByteObjectCursor cursor) {
+      cursor.setPosition(data, currentOffset);
+      currentOffset += cursor.getLength();
+      return cursor;
+   }
+
+   /**
+    * Visits the remaining {@link ByteObject}s with a single {@link ByteObjectCursor}.
+    * <br>
+    * <br>
+    * Index given to the visitor starts at 0 for the current position.
+    * @param visitor
+    * @return the number of elements visited
+    */
+   public int forEach(IByteObjectVisitor visitor) {
+      ByteObjectCursor cursor = new ByteObjectCursor(boc, data);
+      int count = 0;
+      while (hasMore()) {
+         getNext(cursor);
+         if (!visitor.visit(cursor, count++)) {
+            break;
+         }
+      }
+      return count;
+   }
    
    //#mdebug
    public String toString() {
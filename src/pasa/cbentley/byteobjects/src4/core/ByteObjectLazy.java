@@ -0,0 +1,78 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * {@link ByteObject} unwrapped by {@link ByteObjectFactory#createByteObjectFromWrapLazy(byte[], int)}
+ * whose params have not been created yet.
+ * <br>
+ * <br>
+ * The params are created from the {@link ByteObjectLazyTable} on the first call to {@link ByteObject#loadParams()},
+ * i.e. the first time a method such as {@link ByteObject#getSubAtIndex(int)}, {@link ByteObject#getSubFirst(int)}
+ * or {@link ByteObject#getSubOrder(int, int)} needs them.
+ * <br>
+ * Params are themselves lazy. Only touched nodes of the graph are ever created.
+ * <br>
+ * <br>
+ * Not thread safe.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectLazy extends ByteObject {
+
+   /**
+    * Position of this {@link ByteObject} in the {@link ByteObjectLazyTable}
+    */
+   private int                 node;
+
+   /**
+    * null once params have been created
+    */
+   private ByteObjectLazyTable table;
+
+   public ByteObjectLazy(BOCtx boc, byte[] data, int index, ByteObjectLazyTable table, int node) {
+      super(boc, data, index);
+      this.table = table;
+      this.node = node;
+   }
+
+   /**
+    * True when params are not yet created
+    * @return
+    */
+   public boolean isLazy() {
+      return table != null;
+   }
+
+   protected void loadParams() {
+      if (table != null) {
+         ByteObjectLazyTable t = table;
+         //reset first. a param may reference this object
+         table = null;
+         param = t.createParams(node);
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectLazy.class, 60);
+      dc.appendVarWithSpace("node", node);
+      dc.appendVarWithSpace("isLazy", isLazy());
+      super.toString(dc.sup());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectLazy.class);
+      dc.appendVarWithSpace("node", node);
+      dc.appendVarWithSpace("isLazy", isLazy());
+      super.toString1Line(dc.sup1Line());
+   }
+   //#enddebug
+
+}
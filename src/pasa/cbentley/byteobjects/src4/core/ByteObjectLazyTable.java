@@ -0,0 +1,280 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObject;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.IBOTypesBOC;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.utils.ShortUtils;
+
+/**
+ * Offset table of a serialized {@link ByteObject} graph, as written by {@link ByteObject#toByteArray()}.
+ * <br>
+ * <br>
+ * The constructor walks the byte array once, reading only headers and serialize trailers.
+ * No {@link ByteObject} is created during that walk.
+ * <br>
+ * Each non reference entry is a node, numbered in the order {@link ByteObjectFactory#createByteObjectFromWrapIto(pasa.cbentley.core.src4.helpers.BytesIterator, pasa.cbentley.core.src4.structs.IntToObjects)}
+ * would have created it. References thus point to node numbers.
+ * <br>
+ * <br>
+ * {@link ByteObject}s are then created on demand with {@link ByteObjectLazyTable#getNode(int)} over the shared array.
+ * <br>
+ * The same node always returns the same instance, so cross references keep their identity.
+ * <br>
+ * <br>
+ * Validation is the same as the eager unwrap. Malformed data fails in the constructor.
+ * <br>
+ * Not thread safe.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectLazyTable extends ObjectBoc implements IByteObject {
+
+   /**
+    * current reading offset during the walk
+    */
+   private int                 cursor;
+
+   private byte[]              data;
+
+   private int                 indexStart;
+
+   /**
+    * Created nodes. null when not yet created.
+    */
+   private ByteObject[]        nodes;
+
+   private int                 numNodes;
+
+   private int                 numSubs;
+
+   /**
+    * Offset in {@link ByteObjectLazyTable#data} of each node
+    */
+   private int[]               offsets;
+
+   private ByteObjectManaged   scratchManaged;
+
+   private ByteObject          scratch;
+
+   /**
+    * Number of params of each node
+    */
+   private int[]               subCounts;
+
+   /**
+    * Node number of each param. -1 for null params.
+    */
+   private int[]               subs;
+
+   /**
+    * Index in {@link ByteObjectLazyTable#subs} of the first param of each node
+    */
+   private int[]               subStarts;
+
+   /**
+    *
+    * @param boc
+    * @param data
+    * @param index start of the root {@link ByteObject}
+    * @throws IllegalArgumentException when data is malformed
+    */
+   public ByteObjectLazyTable(BOCtx boc, byte[] data, int index) {
+      super(boc);
+      this.data = data;
+      this.indexStart = index;
+      this.cursor = index;
+      offsets = new int[8];
+      subStarts = new int[8];
+      subCounts = new int[8];
+      subs = new int[8];
+      scratch = new ByteObject(boc);
+      scratch.data = data;
+      int root = scan();
+      if (root != 0) {
+         //root is null or a reference
+         throw new IllegalArgumentException("Malformed byte data");
+      }
+      nodes = new ByteObject[numNodes];
+      scratch = null;
+      scratchManaged = null;
+   }
+
+   /**
+    * Creates the params of node. Params are themselves created with {@link ByteObjectLazyTable#getNode(int)}.
+    * @param node
+    * @return null when node has no params
+    */
+   ByteObject[] createParams(int node) {
+      int count = subCounts[node];
+      if (count == 0) {
+         return null;
+      }
+      int start = subStarts[node];
+      ByteObject[] params = new ByteObject[count];
+      for (int i = 0; i < count; i++) {
+         int sub = subs[start + i];
+         if (sub != -1) {
+            params[i] = getNode(sub);
+         }
+      }
+      return params;
+   }
+
+   private int[] grow(int[] ar, int min) {
+      if (min <= ar.length) {
+         return ar;
+      }
+      int size = ar.length * 2;
+      if (size < min) {
+         size = min;
+      }
+      int[] n = new int[size];
+      System.arraycopy(ar, 0, n, 0, ar.length);
+      return n;
+   }
+
+   /**
+    * Number of bytes consumed by the serialized graph
+    * @return
+    */
+   public int getLength() {
+      return cursor - indexStart;
+   }
+
+   /**
+    * The {@link ByteObject} of node, creating it if needed.
+    * <br>
+    * <br>
+    * Nodes with params are {@link ByteObjectLazy}.
+    * <br>
+    * {@link ByteObjectManaged} nodes get their params right away, since they cannot be lazy. Those params are lazy.
+    * @param node
+    * @return
+    */
+   public ByteObject getNode(int node) {
+      ByteObject bo = nodes[node];
+      if (bo == null) {
+         int offset = offsets[node];
+         int len = ShortUtils.readShortBEUnsigned(data, offset + A_OBJECT_OFFSET_3_LENGTH2);
+         if (len == A_OBJECT_LENGTH_OVERRIDE) {
+            bo = new ByteObjectManaged(boc, data, offset);
+            nodes[node] = bo;
+            bo.param = createParams(node);
+         } else if (subCounts[node] != 0) {
+            bo = new ByteObjectLazy(boc, data, offset, this, node);
+            nodes[node] = bo;
+         } else {
+            bo = new ByteObject(boc, data, offset);
+            nodes[node] = bo;
+         }
+      }
+      return bo;
+   }
+
+   public int getNumNodes() {
+      return numNodes;
+   }
+
+   /**
+    * The root {@link ByteObject}
+    * @return
+    */
+   public ByteObject getRoot() {
+      return getNode(0);
+   }
+
+   /**
+    * Reads the entry at {@link ByteObjectLazyTable#cursor} and the entries of its params.
+    * @return node number or -1 for null
+    */
+   private int scan() {
+      int offset = cursor;
+      ByteObject bo = scratch;
+      bo.index = offset;
+      int type = bo.getType();
+      if (type == IBOTypesBOC.TYPE_015_REFERENCE_32) {
+         int reference = bo.get4(IByteObject.A_OBJECT_OFFSET_2_REFERENCE4);
+         cursor += 5;
+         if (reference == -1) {
+            return -1;
+         }
+         if (reference < 0) {
+            throw new IllegalArgumentException("Wrong Reference " + reference);
+         }
+         if (reference >= numNodes) {
+            throw new NullPointerException("Null Reference " + reference + " when unwrapping");
+         }
+         return reference;
+      }
+      int length = bo.getLength();
+      //same test as getNode, an extended object may be 0xFFFF bytes long
+      if (ShortUtils.readShortBEUnsigned(data, offset + A_OBJECT_OFFSET_3_LENGTH2) == A_OBJECT_LENGTH_OVERRIDE) {
+         //we have a ByteObjectManaged.
+         if (scratchManaged == null) {
+            scratchManaged = new ByteObjectManaged(boc, data, offset);
+         }
+         scratchManaged.index = offset;
+         bo = scratchManaged;
+         length = bo.getLength();
+      }
+      if (length > data.length) {
+         throw new ArrayIndexOutOfBoundsException("Length read in header " + length + " >= " + data.length + " bigger than BytesCounter array's length");
+      }
+      int node = numNodes++;
+      offsets = grow(offsets, numNodes);
+      subStarts = grow(subStarts, numNodes);
+      subCounts = grow(subCounts, numNodes);
+      offsets[node] = offset;
+      cursor += length;
+      int magicByte = bo.getSerializedMagicByte();
+      if (magicByte != -1) {
+         //we have sub parameters.
+         if (magicByte != IByteObject.MAGIC_BYTE_DEF) {
+            throw new IllegalArgumentException("ByteObject is malformed. Wrong MagicByte");
+         }
+         int numSub = bo.getSerializedNumParam();
+         if (numSub != 0) {
+            int start = numSubs;
+            numSubs += numSub;
+            subs = grow(subs, numSubs);
+            subStarts[node] = start;
+            subCounts[node] = numSub;
+            for (int i = 0; i < numSub; i++) {
+               //scratch is repositioned by the sub calls
+               int sub = scan();
+               subs[start + i] = sub;
+            }
+         }
+      }
+      return node;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectLazyTable.class, 250);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numNodes", numNodes);
+      dc.appendVarWithSpace("numSubs", numSubs);
+      dc.appendVarWithSpace("length", getLength());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectLazyTable.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
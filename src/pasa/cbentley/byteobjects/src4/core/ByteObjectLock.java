@@ -0,0 +1,243 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.core.interfaces.IBOAgentManaged;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Read/write lock of a single {@link ByteObjectManaged} flagged {@link IBOAgentManaged#AGENT_FLAGX_2_MUTLI_THREAD}.
+ * <br>
+ * <br>
+ * Several threads may hold the read lock together. The write lock is exclusive.
+ * <br>
+ * Both locks are reentrant. Each take must be released.
+ * A thread holding the read lock must not ask for the write lock, {@link ByteObjectLock#lockWrite()} throws.
+ * <br>
+ * <br>
+ * Waiting writers block new readers so a stream of readers does not starve them.
+ * A thread that already holds the read lock is not blocked, it would wait on itself.
+ * <br>
+ * <br>
+ * An interrupt does not stop the wait for a lock. The interrupt status is restored once the lock is taken.
+ * <br>
+ * <br>
+ * Each agent waits on its own monitor. There is no global list of waiting threads as in {@link LockManager}.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectLock extends ObjectBoc {
+
+   /**
+    * Number of takes of the read lock, all threads
+    */
+   private int      numReaders;
+
+   /**
+    * Takes of the read lock by the thread at the same position in {@link ByteObjectLock#readers}
+    */
+   private int[]    readHolds = new int[2];
+
+   /**
+    * Threads holding the read lock. null for free positions
+    */
+   private Thread[] readers   = new Thread[2];
+
+   private int      numWaitingWriters;
+
+   private int      numWrites;
+
+   private Thread   writer;
+
+   public ByteObjectLock(BOCtx boc) {
+      super(boc);
+   }
+
+   /**
+    * Position of the thread in {@link ByteObjectLock#readers}. -1 when it does not hold the read lock
+    * @param t
+    * @return
+    */
+   private int getReader(Thread t) {
+      for (int i = 0; i < readers.length; i++) {
+         if (readers[i] == t) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Number of takes of the read lock, all threads
+    * @return
+    */
+   public synchronized int getNumReaders() {
+      return numReaders;
+   }
+
+   public synchronized int getNumWaitingWriters() {
+      return numWaitingWriters;
+   }
+
+   /**
+    * Number of takes of the write lock by its holder. 0 when not write locked
+    * @return
+    */
+   public synchronized int getNumWrites() {
+      return numWrites;
+   }
+
+   /**
+    * True when a thread holds the read or the write lock
+    * @return
+    */
+   public synchronized boolean isLocked() {
+      return writer != null || numReaders != 0;
+   }
+
+   public synchronized boolean isWriteLocked() {
+      return writer != null;
+   }
+
+   /**
+    * Waits until no other thread writes or waits to write.
+    * <br>
+    * The thread holding the write lock or already holding the read lock gets the read lock at once.
+    */
+   public synchronized void lockRead() {
+      Thread t = Thread.currentThread();
+      int slot = getReader(t);
+      if (slot != -1) {
+         //nested read. waiting writers wait for this thread
+         readHolds[slot]++;
+         numReaders++;
+         return;
+      }
+      boolean isInterrupted = false;
+      while (writer != t && (writer != null || numWaitingWriters != 0)) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            isInterrupted = true;
+         }
+      }
+      slot = getReader(null);
+      if (slot == -1) {
+         slot = readers.length;
+         Thread[] newReaders = new Thread[slot * 2];
+         System.arraycopy(readers, 0, newReaders, 0, slot);
+         readers = newReaders;
+         int[] newHolds = new int[slot * 2];
+         System.arraycopy(readHolds, 0, newHolds, 0, slot);
+         readHolds = newHolds;
+      }
+      readers[slot] = t;
+      readHolds[slot] = 1;
+      numReaders++;
+      if (isInterrupted) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Waits until no other thread reads or writes.
+    * @throws IllegalStateException when the thread holds the read lock
+    */
+   public synchronized void lockWrite() {
+      Thread t = Thread.currentThread();
+      if (writer == t) {
+         numWrites++;
+         return;
+      }
+      if (getReader(t) != -1) {
+         throw new IllegalStateException("read lock held by " + t.getName());
+      }
+      numWaitingWriters++;
+      boolean isInterrupted = false;
+      while (writer != null || numReaders != 0) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            isInterrupted = true;
+         }
+      }
+      numWaitingWriters--;
+      writer = t;
+      numWrites = 1;
+      if (isInterrupted) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Takes the write lock only if it is free.
+    * @return true when the lock was taken
+    */
+   public synchronized boolean tryLockWrite() {
+      Thread t = Thread.currentThread();
+      if (writer == t) {
+         numWrites++;
+         return true;
+      }
+      if (writer != null || numReaders != 0) {
+         return false;
+      }
+      writer = t;
+      numWrites = 1;
+      return true;
+   }
+
+   public synchronized void unlockRead() {
+      int slot = getReader(Thread.currentThread());
+      if (slot == -1) {
+         throw new IllegalStateException("read lock not held by " + Thread.currentThread().getName());
+      }
+      readHolds[slot]--;
+      if (readHolds[slot] == 0) {
+         readers[slot] = null;
+      }
+      numReaders--;
+      if (numReaders == 0) {
+         notifyAll();
+      }
+   }
+
+   public synchronized void unlockWrite() {
+      if (writer != Thread.currentThread()) {
+         throw new IllegalStateException("write lock not held by " + Thread.currentThread().getName());
+      }
+      numWrites--;
+      if (numWrites == 0) {
+         writer = null;
+         notifyAll();
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectLock.class, 222);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numReaders", numReaders);
+      dc.appendVarWithSpace("numWrites", numWrites);
+      dc.appendVarWithSpace("numWaitingWriters", numWaitingWriters);
+      dc.appendVarWithSpace("writer", writer == null ? "null" : writer.getName());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectLock.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
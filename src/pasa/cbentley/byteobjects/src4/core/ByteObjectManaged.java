@@ -9,6 +9,7 @@ import java.io.IOException;
 import pasa.cbentley.byteobjects.src4.core.interfaces.IByteObject;
 import pasa.cbentley.byteobjects.src4.core.interfaces.IMemorySource;
 import pasa.cbentley.byteobjects.src4.core.interfaces.IBOAgentManaged;
+import pasa.cbentley.byteobjects.src4.core.interfaces.IBOByteControler;
 import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
 import pasa.cbentley.byteobjects.src4.ctx.IBOTypesBOC;
 import pasa.cbentley.byteobjects.src4.sources.ITechMemorySource;
@@ -177,6 +178,56 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
    //#debug
    private Thread         myThread;                 //this field is used
 
+   /**
+    * Lazily created by {@link ByteObjectManaged#getRWLock()} for multi thread agents
+    */
+   private ByteObjectLock rwLock;
+
+   /**
+    * Guards the creation of {@link ByteObjectManaged#rwLock}.
+    * <br>
+    * Not the monitor of this agent, held during reloads, nor a monitor shared by all agents.
+    */
+   private final Object   rwLockGuard          = new Object();
+
+   /**
+    * True while {@link ByteObject#data} is the memory of a {@link MemorySource} given by {@link MemorySource#loadView(int)}.
+    * <br>
+    * That memory is never written. The first write copies the agent, see {@link ByteObjectManaged#writeBegin()}.
+    */
+   boolean                isView;
+
+   /**
+    * Sequence stamp of {@link ByteObjectManaged#tryOptimisticRead()}.
+    * <br>
+    * Odd while a writer holds {@link ByteObjectManaged#dataLock()} or expands the array. Increases with every write.
+    */
+   private volatile int   stamp;
+
+   /**
+    * Written by {@link ByteObjectManaged#validate(int)} before it reads {@link ByteObjectManaged#stamp}.
+    * <br>
+    * The volatile write keeps the reads of the caller before the read of the stamp.
+    */
+   private volatile int   stampFence;
+
+   /**
+    * Value of {@link ByteObjectManaged#stamp} when the agent was last loaded or saved
+    */
+   private int            stampClean;
+
+   /**
+    * Reference bit of the {@link ByteControllerBudget} clock. Set by {@link ByteObjectManaged#methodStarts()}
+    */
+   boolean                isAccessed           = true;
+
+   /**
+    * Number of running methods of a single thread agent.
+    * <br>
+    * Volatile because the sweep of {@link ByteControllerBudget} may run in another thread.
+    */
+   private volatile int   numActive;
+
    MutexSignal            sem;
 
    /**
@@ -387,6 +438,7 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * @param tech
     */
    public void burnHeader(ByteObjectManaged tech) {
+      writeBegin();
       int hl = tech.get2(AGENT_OFFSET_13_LEN_HEADER2);
       int thisHl = get2(AGENT_OFFSET_13_LEN_HEADER2);
       int o1 = get2(AGENT_OFFSET_13_LEN_HEADER2);
@@ -395,6 +447,7 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
       int o4 = get4(AGENT_OFFSET_16_LEN4);
       int min = Math.min(hl, thisHl);
       System.arraycopy(tech.data, tech.index, this.data, this.index, min);
+      checksumDirty(0, min);
       set2(AGENT_OFFSET_13_LEN_HEADER2, o1);
       set4(AGENT_OFFSET_14_LEN_DATA_4, o2);
       set3(AGENT_OFFSET_15_LEN_BUFFER_3, o3);
@@ -442,9 +495,11 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * @param offset
     */
    public void copyAppendData(byte[] data, int offset, int len) {
+      writeBegin();
       int cs = getDataOffsetEndLoaded(); //current end of data is our start position of appending
       expandData(len);//first expand the data
       System.arraycopy(data, offset, this.data, cs, len);
+      checksumDirty(cs - index, len);
    }
 
    /**
@@ -474,6 +529,7 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
       expandResetArrayData(len);
       int cs = getDataOffsetStartLoaded(); //current end of data is our start position of appending
       System.arraycopy(data, offset, this.data, cs, len);
+      checksumDirty(cs - index, len);
    }
 
    /**
@@ -484,21 +540,21 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * When the call of {@link ByteObjectManaged#dataUnLock()} is not sent
     * after the end of the method, there will be a deadlock. it can be because
     * of an uncheck exception didn't call.
-    * 
-    * No reentrant locks.
+    * <br>
+    * <br>
+    * Takes the write lock of {@link ByteObjectManaged#getRWLock()}. Reentrant for the thread holding it.
     */
    public void dataLock() {
       //only checks for lock if multi threads
       if (isMultiThread()) {
-         if (isSyncroFlag(SYNCRO_FLAG_2_LOCKED)) {
-            //what kind of lock?
-            //lock thread
-            boc.getLock().wait(this, Thread.currentThread());
-            //thread locks the 
-         } else {
-            //object wasn't locked. lock it for ourselves
+         ByteObjectLock lock = getRWLock();
+         lock.lockWrite();
+         if (lock.getNumWrites() == 1) {
+            //optimistic readers fail until unlock
+            stamp++;
+            //locking is not a modification
             setSyncroFlag(SYNCRO_FLAG_2_LOCKED, true);
-            setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_5_LOCKED, true);
+            setFlagNoVersion(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_5_LOCKED, true);
          }
       } else {
          //otherwise check if current thread is valid. only in test mode.
@@ -549,16 +605,190 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
          }
       }
       if (isMultiThread()) {
-         //volatile.
-         setSyncroFlag(SYNCRO_FLAG_2_LOCKED, false);
-         setFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_5_LOCKED, false);
-         //only do the expensive notification if there is at least one waiting.
-         if (hasFlag(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_6_WAITING)) {
-            //notify waiting first waiting thread
-            //TODO use a semaphore. to avoid missing signals
-            boc.getLock().notify(this);
+         ByteObjectLock lock = getRWLock();
+         if (lock.getNumWrites() == 1) {
+            //still exclusive
+            setSyncroFlag(SYNCRO_FLAG_2_LOCKED, false);
+            setFlagNoVersion(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_5_LOCKED, false);
+            //volatile write publishes the modifications
+            stamp++;
+         }
+         //waiting threads wait on the lock of this agent
+         lock.unlockWrite();
+      }
+   }
+
+   /**
+    * Stamp for an optimistic read without lock.
+    * <br>
+    * <br>
+    * Read the fields, then call {@link ByteObjectManaged#validate(int)}. When false, a writer interfered
+    * and the reads must be done again, ideally within {@link ByteObjectManaged#dataLockRead()}.
+    * <br>
+    * Values read before validation may be inconsistent and an array access may fail. Such exceptions mean the same as a failed validation.
+    * <br>
+    * <br>
+    * Only valid when all writers hold {@link ByteObjectManaged#dataLock()}, which makes the stamp odd before they write.
+    * Setters called without it move the stamp after the write, so a read racing with them may validate.
+    * <br>
+    * Agents that are not {@link ByteObjectManaged#isMultiThread()} do not lock their writers and never give a stamp.
+    * @return -1 when a writer holds the lock or when the agent is single thread
+    * @see ByteObjectManaged#getValueOptimistic(int, int)
+    */
+   public int tryOptimisticRead() {
+      if (!isMultiThread()) {
+         return -1;
+      }
+      int s = stamp;
+      if ((s & 1) != 0) {
+         return -1;
+      }
+      return s;
+   }
+
+   /**
+    * True when no write happened since {@link ByteObjectManaged#tryOptimisticRead()} returned s.
+    * @param s
+    * @return
+    */
+   public boolean validate(int s) {
+      if (s == -1) {
+         return false;
+      }
+      //no read of the caller may move after the stamp read
+      stampFence = s;
+      return stamp == s;
+   }
+
+   /**
+    * Reads the value with an optimistic read. Falls back to the read lock when a writer interferes
+    * or when the agent is single thread.
+    * @param index
+    * @param size
+    * @return
+    */
+   public int getValueOptimistic(int index, int size) {
+      int s = tryOptimisticRead();
+      if (s != -1) {
+         try {
+            int v = getValue(index, size);
+            if (validate(s)) {
+               return v;
+            }
+         } catch (RuntimeException e) {
+            //array swapped by a writer
          }
       }
+      dataLockRead();
+      try {
+         return getValue(index, size);
+      } finally {
+         dataUnLockRead();
+      }
+   }
+
+   /**
+    * Every modification of the bytes goes through here.
+    * <br>
+    * A write outside of {@link ByteObjectManaged#dataLock()} moves the stamp once done, for {@link ByteObjectManaged#isClean()}.
+    * It does not protect optimistic reads running during the write.
+    */
+   protected void checksumDirty(int offset, int len) {
+      super.checksumDirty(offset, len);
+      int s = stamp;
+      if ((s & 1) == 0) {
+         //write outside of a lock
+         stamp = s + 2;
+      }
+      if (byteCon != null && isKeyField(offset, len)) {
+         byteCon.reindexAgent(this);
+      }
+   }
+
+   /**
+    * True when the bytes overlap a field indexed by the {@link ByteController}
+    * <li> {@link IBOAgentManaged#AGENT_OFFSET_05_CLASS_ID2}
+    * <li> {@link IBOAgentManaged#AGENT_OFFSET_06_GSOURCE_ID2}
+    * <li> {@link IBOAgentManaged#AGENT_OFFSET_08_REF_ID2}
+    * @param offset
+    * @param len
+    * @return
+    */
+   private boolean isKeyField(int offset, int len) {
+      int end = offset + len;
+      if (offset < AGENT_OFFSET_06_GSOURCE_ID2 + 2 && end > AGENT_OFFSET_05_CLASS_ID2) {
+         return true;
+      }
+      return offset < AGENT_OFFSET_08_REF_ID2 + 2 && end > AGENT_OFFSET_08_REF_ID2;
+   }
+
+   /**
+    * Makes the stamp odd when no writer already did.
+    * @return true when {@link ByteObjectManaged#stampWriteEnd(boolean)} must make it even
+    */
+   private boolean stampWriteBegin() {
+      int s = stamp;
+      if ((s & 1) == 0) {
+         stamp = s + 1;
+         return true;
+      }
+      return false;
+   }
+
+   private void stampWriteEnd(boolean isBegun) {
+      if (isBegun) {
+         stamp++;
+      }
+   }
+
+   /**
+    * Read lock. Threads reading together do not wait for each other.
+    * <br>
+    * Waits while another thread holds or waits for the write lock of {@link ByteObjectManaged#dataLock()}.
+    * A thread already holding the read lock takes it again without waiting.
+    * <br>
+    * Does nothing when not {@link ByteObjectManaged#isMultiThread()}
+    */
+   public void dataLockRead() {
+      if (isMultiThread()) {
+         getRWLock().lockRead();
+      }
+   }
+
+   /**
+    * Releases {@link ByteObjectManaged#dataLockRead()}
+    */
+   public void dataUnLockRead() {
+      if (isMultiThread()) {
+         getRWLock().unlockRead();
+      }
+   }
+
+   /**
+    * Read/write lock of this agent. Created on first use.
+    * @return
+    */
+   public ByteObjectLock getRWLock() {
+      synchronized (rwLockGuard) {
+         if (rwLock == null) {
+            rwLock = new ByteObjectLock(boc);
+         }
+         return rwLock;
+      }
+   }
+
+   /**
+    * True when a thread holds the read or write lock.
+    * <br>
+    * The memory of a locked agent must not be purged.
+    * @return
+    */
+   public boolean isDataLocked() {
+      ByteObjectLock lock = null;
+      synchronized (rwLockGuard) {
+         lock = rwLock;
+      }
+      return lock != null && lock.isLocked();
    }
 
    public boolean isMultiThread() {
@@ -664,15 +894,47 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * @param position
     */
    public void expandDataArray(int incr, int position) {
-      if (get3(AGENT_OFFSET_15_LEN_BUFFER_3) > incr) {
-         this.incrementNoVersion(AGENT_OFFSET_15_LEN_BUFFER_3, 3, -incr);
-         this.incrementNoVersion(AGENT_OFFSET_14_LEN_DATA_4, 4, incr);
-      } else {
-         //we must expand array
-         expandArrayInternal(incr, position);
-         incrementLengthData(incr);
+      boolean isBegun = stampWriteBegin();
+      try {
+         if (get3(AGENT_OFFSET_15_LEN_BUFFER_3) > incr) {
+            this.incrementNoVersion(AGENT_OFFSET_15_LEN_BUFFER_3, 3, -incr);
+            this.incrementNoVersion(AGENT_OFFSET_14_LEN_DATA_4, 4, incr);
+         } else {
+            int headroom = getHeadroom(incr);
+            //we must expand array
+            if (headroom == 0) {
+               expandArrayInternal(incr, position);
+               incrementLengthData(incr);
+            } else {
+               //one move. the buffer area starts at the end of the data, wherever position was
+               byteCon.expandMemory(this, incr, position, headroom, getDataOffsetEndLoaded());
+               incrementLengthData(incr);
+               incrementLengthBuffer(headroom);
+            }
+         }
+         setSaveFlag(false);
+      } finally {
+         stampWriteEnd(isBegun);
       }
-      setSaveFlag(false);
+   }
+
+   /**
+    * Extra bytes for the buffer area when the array must be expanded by incr.
+    * <br>
+    * Half the length with {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}, 0 otherwise.
+    * <br>
+    * Never negative. Limited by the room left in the 3 bytes field {@link IBOAgentManaged#AGENT_OFFSET_15_LEN_BUFFER_3}.
+    * @param incr
+    * @return
+    */
+   private int getHeadroom(int incr) {
+      if (byteCon == null || incr <= 0 || byteCon.getExpansionPolicy() != IBOByteControler.MEMC_EX_POLICY_4_ARENA) {
+         return 0;
+      }
+      int headroom = Math.max(incr, getLength() >> 1);
+      //3 bytes field
+      int room = 0xFFFFFF - get3(AGENT_OFFSET_15_LEN_BUFFER_3);
+      return Math.max(0, Math.min(headroom, room));
    }
 
    /**
@@ -691,22 +953,28 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
       }
       int headerLen = get2(AGENT_OFFSET_13_LEN_HEADER2);
       int totalSize = headerLen + newDataSize;
-      if (byteCon != null) {
-         byte[] oldData = this.data;
-         int indexOld = this.index;
-         byteCon.setAgentData(this, totalSize);
-         System.arraycopy(oldData, indexOld, data, index, headerLen);
-      } else {
-         byte[] newData = new byte[totalSize];
-         System.arraycopy(data, index, newData, 0, headerLen);
-         data = newData;
-         index = 0;
+      boolean isBegun = stampWriteBegin();
+      try {
+         if (byteCon != null) {
+            byte[] oldData = this.data;
+            int indexOld = this.index;
+            byteCon.setAgentData(this, totalSize);
+            System.arraycopy(oldData, indexOld, data, index, headerLen);
+         } else {
+            byte[] newData = new byte[totalSize];
+            System.arraycopy(data, index, newData, 0, headerLen);
+            data = newData;
+            index = 0;
+         }
+         //both arrays belong to this agent
+         isView = false;
+         //update the size values
+         set4(AGENT_OFFSET_14_LEN_DATA_4, newDataSize);
+         set4(AGENT_OFFSET_16_LEN4, totalSize);
+         set3(AGENT_OFFSET_15_LEN_BUFFER_3, 0);
+      } finally {
+         stampWriteEnd(isBegun);
       }
-      //update the size values
-      set4(AGENT_OFFSET_14_LEN_DATA_4, newDataSize);
-      set4(AGENT_OFFSET_16_LEN4, totalSize);
-      set3(AGENT_OFFSET_15_LEN_BUFFER_3, 0);
-
    }
 
    public void flagDataChange() {
@@ -1051,10 +1319,11 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * Called by {@link ByteController} when merged within a bigger strucuture, references
     * are updated by an increment
     * <br>
+    * Look up indexes of the {@link ByteController} are updated.
     * @param incr
     */
    public void incrementREFID(int incr) {
-
+      increment(AGENT_OFFSET_08_REF_ID2, 2, incr);
    }
 
    /**
@@ -1174,10 +1443,16 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
    }
 
    public void methodEnds() {
-      dataUnLock();
+      if (!isMultiThread()) {
+         numActive--;
+      }
+      dataUnLockRead();
    }
 
    public void methodEndsWrite() {
+      if (!isMultiThread()) {
+         numActive--;
+      }
       dataUnLock();
    }
 
@@ -1185,20 +1460,96 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * 
     */
    private void methodStartReloadCheck() {
-      if (hasFlag(AGENT_OFFSET_01_FLAG_1, AGENT_FLAG_CTRL_7_DATA_UNLOADED)) {
-         throw new IllegalStateException("ByteObjectManaged#initMe not called after constructor");
+      isAccessed = true;
+      if (!isMultiThread()) {
+         numActive++;
       }
-      if (hasFlag(AGENT_OFFSET_02_FLAGX_1, AGENT_FLAGX_1_GARBAGE_COLLECTED)) {
-         //we want to detect if we have different thread accessing our data
-         //if our GC happens
-         if (isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
-            //can we accept other threads trying to access during the reload? NO. So we must sync
-            synchronized (this) {
-               //check if still unloaded
+      //data unloaded by the ByteController
+      if (isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
+         //can we accept other threads trying to access during the reload? NO. So we must sync
+         synchronized (this) {
+            //check if still unloaded
+            if (isSyncroFlag(SYNCRO_FLAG_1_UNLOADED)) {
                dataReload();
             }
          }
       }
+      if (hasFlag(AGENT_OFFSET_01_FLAG_1, AGENT_FLAG_CTRL_7_DATA_UNLOADED)) {
+         throw new IllegalStateException("ByteObjectManaged#initMe not called after constructor");
+      }
+   }
+
+   /**
+    * True when the bytes were not modified since the last load or save
+    * @return
+    */
+   boolean isClean() {
+      return !isModified() && stamp == stampClean;
+   }
+
+   /**
+    * True while a method of the agent runs
+    * @return
+    */
+   boolean isInUse() {
+      if (isMultiThread()) {
+         return isDataLocked();
+      }
+      return numActive > 0;
+   }
+
+   /**
+    * Takes the write lock for an eviction. Fails when a thread, including the current one, uses the agent.
+    * <br>
+    * <br>
+    * A single thread agent does not lock its methods. It is evicted when none of its methods runs,
+    * whatever the thread that sweeps, including an agent never used since it was loaded.
+    * @return
+    */
+   boolean tryLockEvict() {
+      if (isMultiThread()) {
+         ByteObjectLock lock = getRWLock();
+         if (!lock.tryLockWrite()) {
+            return false;
+         }
+         if (lock.getNumWrites() != 1) {
+            lock.unlockWrite();
+            return false;
+         }
+         return true;
+      }
+      return numActive == 0;
+   }
+
+   void unlockEvict() {
+      if (isMultiThread()) {
+         getRWLock().unlockWrite();
+      }
+   }
+
+   /**
+    * Replaces the array. Optimistic reads started before fail.
+    * @param data
+    * @param index
+    */
+   void swapData(byte[] data, int index) {
+      boolean isBegun = stampWriteBegin();
+      this.data = data;
+      this.index = index;
+      isView = false;
+      stampWriteEnd(isBegun);
+   }
+
+   /**
+    * Copies the bytes of a view before they are written, so that the memory of the {@link MemorySource} stays as it was read.
+    */
+   protected void writeBegin() {
+      if (isView) {
+         int len = getLength();
+         byte[] copy = new byte[len];
+         System.arraycopy(data, index, copy, 0, len);
+         swapData(copy, 0);
+      }
    }
 
    /**
@@ -1211,9 +1562,11 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * The agent must be flagged to prevent memory loss during a GC inside the method execution.
     * <br>
     * Kind of a synchro flag
+    * <br>
+    * Read lock. Methods modifying the data use {@link ByteObjectManaged#methodStartsWrite()}
     */
    public void methodStarts() {
-      dataLock();
+      dataLockRead();
       methodStartReloadCheck();
    }
 
@@ -1252,6 +1605,7 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
     * Zeros data and send it to buffer
     */
    public void resetDataToBuffer() {
+      writeBegin();
       int dataSize = get4(AGENT_OFFSET_14_LEN_DATA_4);
       int start = getDataOffsetStartLoaded();
       int index = start;
@@ -1259,6 +1613,7 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
          data[index] = 0;
          index++;
       }
+      checksumDirty(start - this.index, dataSize);
       incrementNoVersion(AGENT_OFFSET_14_LEN_DATA_4, 4, -dataSize);
       incrementNoVersion(AGENT_OFFSET_15_LEN_BUFFER_3, 3, dataSize);
 
@@ -1411,6 +1766,11 @@ public class ByteObjectManaged extends ByteObject implements IBOAgentManaged, IT
 
    public void setSaveFlag(boolean b) {
       setFlagNoVersion(AGENT_OFFSET_03_FLAGZ_1, AGENT_FLAGZ_CTRL_7_SAVED, b);
+      if (b) {
+         int s = stamp;
+         //within dataLock, the unlock makes it even
+         stampClean = (s & 1) != 0 ? s + 1 : s;
+      }
    }
 
    /**
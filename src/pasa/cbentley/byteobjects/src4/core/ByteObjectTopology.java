@@ -0,0 +1,191 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core;
+
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.structs.IntToObjects;
+
+/**
+ * Builds the deep first topology of a {@link ByteObject} graph.
+ * <br>
+ * <br>
+ * Same output as the {@link IntToObjects#findObjectRef(Object)} based walk but the positions
+ * of already visited {@link ByteObject}s are kept in an identity hash table.
+ * <br>
+ * Each cross reference check is thus O(1) instead of a scan of the reference list.
+ * <br>
+ * <br>
+ * Objects already present in the global reference list given to the constructor are indexed once.
+ * <br>
+ * Used by {@link ByteObject#getTopology(IntToObjects)}, {@link ByteObject#toByteArray(IntToObjects, ByteObject)}
+ * and {@link ByteObject#serializeTo(IntToObjects, pasa.cbentley.core.src4.io.BADataOS)}
+ * <br>
+ * <br>
+ * Not thread safe. One instance per walk.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class ByteObjectTopology extends ObjectBoc {
+
+   private int          count;
+
+   private IntToObjects ito;
+
+   /**
+    * Identity keys. null is an empty slot.
+    */
+   private Object[]     keys;
+
+   /**
+    * Position in {@link ByteObjectTopology#refs} of the key at the same slot
+    */
+   private int[]        positions;
+
+   private IntToObjects refs;
+
+   /**
+    *
+    * @param boc
+    * @param ito the topology being filled
+    * @param refs global references. may be the same as ito.
+    */
+   public ByteObjectTopology(BOCtx boc, IntToObjects ito, IntToObjects refs) {
+      super(boc);
+      this.ito = ito;
+      this.refs = refs;
+      int size = 16;
+      while (size < refs.nextempty * 2) {
+         size = size << 1;
+      }
+      keys = new Object[size];
+      positions = new int[size];
+      //index existing references. first position wins like the linear scan
+      for (int i = 0; i < refs.nextempty; i++) {
+         Object o = refs.objects[i];
+         if (o != null && find(o) == -1) {
+            put(o, i);
+         }
+      }
+   }
+
+   /**
+    * Adds bo and its params in a deep first manner.
+    * <br>
+    * <br>
+    * Cross references are added as null with the position in the reference list.
+    * @param bo
+    */
+   public void addFlatLine(ByteObject bo) {
+      int pos = find(bo);
+      if (pos != -1) {
+         //cross reference
+         ito.add(null, pos);
+      } else {
+         if (refs == ito) {
+            put(bo, ito.nextempty);
+            ito.add(bo, pos);
+         } else {
+            ito.add(bo, pos);
+            //adds object in the global references as well
+            put(bo, refs.nextempty);
+            refs.add(bo, 0);
+         }
+         bo.loadParams();
+         ByteObject[] param = bo.param;
+         if (param != null) {
+            for (int i = 0; i < param.length; i++) {
+               if (param[i] != null) {
+                  addFlatLine(param[i]);
+               } else {
+                  //null and -1 equals a real null
+                  refs.add(null, -1);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    *
+    * @param o
+    * @return -1 if not found
+    */
+   public int find(Object o) {
+      int mask = keys.length - 1;
+      int slot = hash(o) & mask;
+      while (keys[slot] != null) {
+         if (keys[slot] == o) {
+            return positions[slot];
+         }
+         slot = (slot + 1) & mask;
+      }
+      return -1;
+   }
+
+   private int hash(Object o) {
+      int h = System.identityHashCode(o);
+      //spread the bits since identity hashes may be aligned
+      return h ^ (h >>> 16);
+   }
+
+   private void put(Object o, int position) {
+      if ((count + 1) * 2 > keys.length) {
+         rehash(keys.length << 1);
+      }
+      int mask = keys.length - 1;
+      int slot = hash(o) & mask;
+      while (keys[slot] != null) {
+         slot = (slot + 1) & mask;
+      }
+      keys[slot] = o;
+      positions[slot] = position;
+      count++;
+   }
+
+   private void rehash(int newSize) {
+      Object[] oldKeys = keys;
+      int[] oldPositions = positions;
+      keys = new Object[newSize];
+      positions = new int[newSize];
+      int mask = newSize - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+         Object o = oldKeys[i];
+         if (o != null) {
+            int slot = hash(o) & mask;
+            while (keys[slot] != null) {
+               slot = (slot + 1) & mask;
+            }
+            keys[slot] = o;
+            positions[slot] = oldPositions[i];
+         }
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, ByteObjectTopology.class, 170);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+      dc.nlLvl(ito, "Topology");
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("count", count);
+      dc.appendVarWithSpace("tableSize", keys.length);
+      dc.appendVarWithSpace("sharedRefs", refs == ito);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, ByteObjectTopology.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -16,6 +16,8 @@ import pasa.cbentley.core.src4.structs.IntToObjects;
 /**
  * {@link LockManager} is used to lock write access to {@link ByteObject}.
  * <br>
+ * {@link ByteObjectManaged} no longer waits here. Each agent has its own {@link ByteObjectLock}.
+ * <br>
  * Good info at
  * <br>
  * <br>
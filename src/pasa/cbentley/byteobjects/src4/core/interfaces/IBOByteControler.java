@@ -5,6 +5,7 @@
 package pasa.cbentley.byteobjects.src4.core.interfaces;
 
 import pasa.cbentley.byteobjects.src4.core.ByteController;
+import pasa.cbentley.byteobjects.src4.core.ByteControllerArena;
 import pasa.cbentley.byteobjects.src4.core.ByteObjectManaged;
 import pasa.cbentley.byteobjects.src4.sources.MemorySource;
 
@@ -64,6 +65,16 @@ public interface IBOByteControler extends IBOAgentManaged {
     */
    public static final int MEMC_EX_POLICY_3_SINGLE         = 3;
 
+   /**
+    * {@link ByteController} expansion policy with geometric growth.
+    * <br>
+    * An agent growing beyond its buffer area is moved to a slab of the {@link ByteControllerArena}
+    * and gets half its length as new buffer area, see {@link IBOAgentManaged#AGENT_OFFSET_15_LEN_BUFFER_3}.
+    * <br>
+    * Sibling agents are not touched. The cost of appending is amortized to a constant per byte.
+    */
+   public static final int MEMC_EX_POLICY_4_ARENA          = 4;
+
    /**
     * Each memory space can only be used by 1 and only 1 agent.
     * <br>
@@ -98,6 +109,13 @@ public interface IBOByteControler extends IBOAgentManaged {
     */
    public static final int MEMC_FLAG_4_HEADER_ALONE        = 1 << 3;
 
+   /**
+    * When set, a 4 bytes CRC32C of the enveloppe is written after the last agent when saving to a {@link MemorySource}.
+    * <br>
+    * Checked when the enveloppe is loaded. Agents of a corrupted enveloppe are flagged {@link IBOAgentManaged#AGENT_FLAG_CTRL_3_CORRUPTED}.
+    */
+   public static final int MEMC_FLAG_5_CHECKSUM            = 1 << 4;
+
    /**
     * Set once
     */
@@ -149,6 +167,7 @@ public interface IBOByteControler extends IBOAgentManaged {
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_3_SINGLE}
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_1_MULTIPLE}
     * <li> {@link IBOByteControler#MEMC_EX_POLICY_2_EXPULSE}
+    * <li> {@link IBOByteControler#MEMC_EX_POLICY_4_ARENA}
     * 
     */
    public static final int MEMC_OFFSET_02_MODE1            = AGENT_BASIC_SIZE + 8;
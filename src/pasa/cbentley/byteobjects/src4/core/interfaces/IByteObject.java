@@ -38,8 +38,28 @@ public interface IByteObject {
    public static final int  A_OBJECT_EX_BASIC_SIZE               = 6;
 
    /**
+    * Header size of a {@link ByteObject} with extended length. 
+    * <br>
+    * {@link IByteObject#A_OBJECT_BASIC_SIZE} + 4 bytes for {@link IByteObject#A_OBJECT_OFFSET_4_LENGTH_EXT4}
+    * <br>
+    * Fields of such {@link ByteObject} start at this offset.
     */
-   public static final int  A_OBJECT_FLAG_1_                     = 1 << 0;
+   public static final int  A_OBJECT_EXTENDED_BASIC_SIZE         = 8;
+
+   /**
+    * When set, a 4 bytes CRC32C of the {@link ByteObject} is stored in the trailer. It is the first trailer field.
+    * <br>
+    * <br>
+    * The CRC covers all the bytes of the {@link ByteObject} except those 4 bytes.
+    * <br>
+    * {@link ByteObject#setChecksum(boolean)} and {@link ByteObject#updateChecksum()}
+    */
+   public static final int  A_OBJECT_FLAG_1_CHECKSUM             = 1 << 0;
+
+   /**
+    * @deprecated use {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM}
+    */
+   public static final int  A_OBJECT_FLAG_1_                     = A_OBJECT_FLAG_1_CHECKSUM;
 
    /**
     * This {@link ByteObject} has variable size due to {@link ByteObject#setDynOverWriteValues(int, int[], int)} kind of method.
@@ -127,6 +147,17 @@ public interface IByteObject {
     */
    public static final int  A_OBJECT_FLAG_8_TAILER               = 1 << 7;
 
+   /**
+    * Value of {@link IByteObject#A_OBJECT_OFFSET_3_LENGTH2} telling the length is coded on 4 bytes
+    * at {@link IByteObject#A_OBJECT_OFFSET_4_LENGTH_EXT4}.
+    * <br>
+    * <br>
+    * Allows plain {@link ByteObject}s bigger than 0xFFFF bytes without the {@link ByteObjectManaged} header.
+    * <br>
+    * See {@link ByteObjectFactory#createByteObjectExtended(int, int)}
+    */
+   public static final int  A_OBJECT_LENGTH_EXTENDED             = 1;
+
    /**
     * 
     */
@@ -211,9 +242,18 @@ public interface IByteObject {
     * When value is {@link IByteObject#A_OBJECT_LENGTH_OVERRIDE}, it means nothing anymore.
     * <br>
     * other special values are 0,1,2,3. Length cannot be smaller than the header size {@link IByteObject#A_OBJECT_BASIC_SIZE}
+    * <br>
+    * When value is {@link IByteObject#A_OBJECT_LENGTH_EXTENDED}, the length is read at {@link IByteObject#A_OBJECT_OFFSET_4_LENGTH_EXT4}
     */
    public static final int  A_OBJECT_OFFSET_3_LENGTH2            = 2;
 
+   /**
+    * 4 bytes length of a {@link ByteObject} flagged with {@link IByteObject#A_OBJECT_LENGTH_EXTENDED}.
+    * <br>
+    * Not compatible with {@link IBOTypesBOC#TYPE_001_EXTENSION} whose type uses the same offset.
+    */
+   public static final int  A_OBJECT_OFFSET_4_LENGTH_EXT4        = 4;
+
    /**
     * 2 bytes type for objects with {@link IBOTypesBOC#TYPE_001_EXTENSION} type
     */
@@ -267,6 +307,13 @@ public interface IByteObject {
     */
    public static final int  A_OBJECT_TAIL_OFFSET_2_SIZE1         = 1;
 
+   /**
+    * The number of bytes of the CRC32C trailer field.
+    * <br>
+    * {@link IByteObject#A_OBJECT_FLAG_1_CHECKSUM}
+    */
+   public static final int  CHECKSUM_BYTE_SIZE                   = 4;
+
    public static final int  INTRA_REF_BYTE_SIZE                  = 1;
 
    /**
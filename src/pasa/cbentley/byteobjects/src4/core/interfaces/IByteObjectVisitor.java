@@ -0,0 +1,33 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.core.interfaces;
+
+import pasa.cbentley.byteobjects.src4.core.ByteObject;
+import pasa.cbentley.byteobjects.src4.core.ByteObjectArray;
+import pasa.cbentley.byteobjects.src4.core.ByteObjectCursor;
+import pasa.cbentley.byteobjects.src4.core.ByteObjectIterator;
+
+/**
+ * Visitor of the elements of a {@link ByteObjectArray} or a {@link ByteObjectIterator}.
+ * <br>
+ * <br>
+ * The {@link ByteObject} given to {@link IByteObjectVisitor#visit(ByteObject, int)} is usually a {@link ByteObjectCursor}
+ * repositioned for each element. It is only valid during the call.
+ * <br>
+ * Use {@link ByteObject#cloneCopyHeadRefParams()} to keep an element.
+ * 
+ * @author Charles Bentley
+ *
+ */
+public interface IByteObjectVisitor {
+
+   /**
+    * 
+    * @param bo the element. only valid during the call
+    * @param index index of the element in the array
+    * @return false to stop the iteration
+    */
+   public boolean visit(ByteObject bo, int index);
+}
@@ -13,6 +13,7 @@ import pasa.cbentley.byteobjects.src4.core.ByteController;
 import pasa.cbentley.byteobjects.src4.core.ByteControllerFactory;
 import pasa.cbentley.byteobjects.src4.core.ByteObject;
 import pasa.cbentley.byteobjects.src4.core.ByteObjectFactory;
+import pasa.cbentley.byteobjects.src4.core.ByteObjectInterner;
 import pasa.cbentley.byteobjects.src4.core.ByteObjectManaged;
 import pasa.cbentley.byteobjects.src4.core.ByteObjectManagedFactory;
 import pasa.cbentley.byteobjects.src4.core.ByteObjectRef;
@@ -132,6 +133,8 @@ public class BOCtx extends ACtx implements ICtx, IByteObject, IStringable, IToSt
 
    private GradientOperator     gradientOperator;
 
+   private ByteObjectInterner       interner;
+
    private LitteralManager          litteral;
 
    private LitteralIntFactory       litteralIntFactory;
@@ -351,6 +354,19 @@ public class BOCtx extends ACtx implements ICtx, IByteObject, IStringable, IToSt
       return gradientOperator;
    }
 
+   /**
+    * Pool of canonical immutable {@link ByteObject}s. Created on first call.
+    * <br>
+    * Strong references by default. See {@link ByteObjectInterner#setWeak(boolean)}
+    * @return
+    */
+   public ByteObjectInterner getInterner() {
+      if (interner == null) {
+         interner = new ByteObjectInterner(this);
+      }
+      return interner;
+   }
+
    public LitteralIntFactory getLitteralIntFactory() {
       if (litteralIntFactory == null) {
          litteralIntFactory = new LitteralIntFactory(this);
@@ -448,6 +464,7 @@ public class BOCtx extends ACtx implements ICtx, IByteObject, IStringable, IToSt
       dc.nlLvl(lockManager, "lockManager");
       dc.nlLvl(rootRefs, "rootRefs");
       dc.nlLvl(valueReadCache, "valueReadCache");
+      dc.nlLvl(interner, "interner");
    }
 
    public void toString1Line(Dctx dc) {
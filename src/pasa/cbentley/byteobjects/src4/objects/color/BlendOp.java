@@ -54,7 +54,7 @@ public class BlendOp extends ObjectBoc implements IStringable {
     * @param baseRed
     * @return
     */
-   private static int fctColorBurn(int src, int baseRed) {
+   static int fctColorBurn(int src, int baseRed) {
       if (baseRed == 0) {
          return 0;
       }
@@ -72,7 +72,7 @@ public class BlendOp extends ObjectBoc implements IStringable {
     * @param baseRed
     * @return
     */
-   private static int fctColorDodge(int src, int baseRed) {
+   static int fctColorDodge(int src, int baseRed) {
       if (src == 255) {
          return 255;
       }
@@ -127,7 +127,7 @@ public class BlendOp extends ObjectBoc implements IStringable {
     * @param background
     * @return
     */
-   private static int fctDivideSrc(int dest, int src) {
+   static int fctDivideSrc(int dest, int src) {
       return Math.min(255, 256 * dest / src + 1);
    }
 
@@ -221,7 +221,7 @@ public class BlendOp extends ObjectBoc implements IStringable {
     * @param baseRed
     * @return
     */
-   private static int fctLinearBurn(int blend, int base) {
+   static int fctLinearBurn(int blend, int base) {
       return Math.max((blend + base) - 255, 0);
    }
 
@@ -271,13 +271,13 @@ public class BlendOp extends ObjectBoc implements IStringable {
       return (blend * screened + (1 - blend) * multiplied) / 255;
    }
 
-   private static int fctOverlaySrc(int base, int blend) {
+   static int fctOverlaySrc(int base, int blend) {
       int multiplied = fctMultiply(base, blend);
       int screened = fctScreenFct(base, blend);
       return (base * screened + (1 - base) * multiplied) / 255;
    }
 
-   private static int fctScreenFct(int base, int blend) {
+   static int fctScreenFct(int base, int blend) {
       return 255 - (((255 - blend) * (255 - base)) / 255);
    }
 
@@ -551,9 +551,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctColorBurn(baseRed, blendRed);
-      int greenResult = fctColorBurn(baseGreen, blendGreen);
-      int blueResult = fctColorBurn(baseBlue, blendBlue);
+      int redResult = BlendOpLut.colorBurn(baseRed, blendRed);
+      int greenResult = BlendOpLut.colorBurn(baseGreen, blendGreen);
+      int blueResult = BlendOpLut.colorBurn(baseBlue, blendBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -567,9 +567,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctColorDodge(baseRed, blendRed);
-      int greenResult = fctColorDodge(baseGreen, blendGreen);
-      int blueResult = fctColorDodge(baseBlue, blendBlue);
+      int redResult = BlendOpLut.colorDodge(baseRed, blendRed);
+      int greenResult = BlendOpLut.colorDodge(baseGreen, blendGreen);
+      int blueResult = BlendOpLut.colorDodge(baseBlue, blendBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -615,9 +615,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctDivideSrc(blendRed, baseRed);
-      int greenResult = fctDivideSrc(blendGreen, baseGreen);
-      int blueResult = fctDivideSrc(blendBlue, baseBlue);
+      int redResult = BlendOpLut.divide(blendRed, baseRed);
+      int greenResult = BlendOpLut.divide(blendGreen, baseGreen);
+      int blueResult = BlendOpLut.divide(blendBlue, baseBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -631,9 +631,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctHardMix(blendRed, baseRed);
-      int greenResult = fctHardMix(blendGreen, baseGreen);
-      int blueResult = fctHardMix(blendBlue, baseBlue);
+      int redResult = BlendOpLut.hardMix(blendRed, baseRed);
+      int greenResult = BlendOpLut.hardMix(blendGreen, baseGreen);
+      int blueResult = BlendOpLut.hardMix(blendBlue, baseBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -727,9 +727,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctLinearBurn(baseRed, blendRed);
-      int greenResult = fctLinearBurn(baseGreen, blendGreen);
-      int blueResult = fctLinearBurn(baseBlue, blendBlue);
+      int redResult = BlendOpLut.linearBurn(baseRed, blendRed);
+      int greenResult = BlendOpLut.linearBurn(baseGreen, blendGreen);
+      int blueResult = BlendOpLut.linearBurn(baseBlue, blendBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -819,36 +819,48 @@ public class BlendOp extends ObjectBoc implements IStringable {
          if (BlendOp.cacheDest == bgPixel && BlendOp.cacheSrc == newPixel) {
             return BlendOp.cacheRest;
          }
-         float alphaFix = (float) newAlpha / (float) 255;
-         float invAlphaFix = ((float) 1) - alphaFix;
-         //mix
-         int redResult = BlendOp.overOperator((bgPixel >> 16) & 0xFF, (newPixel >> 16) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
-         int greenResult = BlendOp.overOperator((bgPixel >> 8) & 0xFF, (newPixel >> 8) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
-         int blueResult = BlendOp.overOperator((bgPixel >> 0) & 0xFF, (newPixel >> 0) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
-         int destAlpha = ((bgPixel >> 24) & 0xFF);
-         //work in base 256
-         int alphaResult = ((newAlpha << 8) + (destAlpha << 8) - (newAlpha * destAlpha)) & 0xFF00;
-         //alpha is shifted 16 before already in base + 8
-         int val = (alphaResult << 16) + (redResult << 16) + (greenResult << 8) + blueResult;
+         int val = mergePixelsOverMix(bgPixel, newPixel, newAlpha);
          BlendOp.cacheDest = bgPixel;
          BlendOp.cacheSrc = newPixel;
          BlendOp.cacheRest = val;
-         //	    int normA = ((alphaResult >> 8) & 0xFF);
-         //	    if (((val >> 24) & 0xFF) != normA) {
-         //		  int diff = Math.abs(((val >> 24) & 0xFF) - normA);
-         //		  String str = "Alpha=" + ((val >> 24) & 0xFF) + "!=" + normA + " Diff=" + diff;
-         //		  SystemLog.printDraw(str);
-         //		  if (diff > 2) {
-         //			SystemLog.printDraw(DrawUtilz.debugColor(bgPixel));
-         //			SystemLog.printDraw(DrawUtilz.debugColor(newPixel));
-         //			SystemLog.printDraw("redResult=" + redResult + " greenResult=" + greenResult + " blueResult=" + blueResult);
-         //			SystemLog.printDraw(DrawUtilz.debugColor(val));
-         //		  }
-         //	    }
          return val;
       }
    }
 
+   /**
+    * Mix of {@link BlendOp#mergePixelsOver(int, int)} for a source alpha between 1 and 254
+    * @param bgPixel
+    * @param newPixel
+    * @param newAlpha
+    * @return
+    */
+   private static int mergePixelsOverMix(int bgPixel, int newPixel, int newAlpha) {
+      float alphaFix = (float) newAlpha / (float) 255;
+      float invAlphaFix = ((float) 1) - alphaFix;
+      //mix
+      int redResult = BlendOp.overOperator((bgPixel >> 16) & 0xFF, (newPixel >> 16) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
+      int greenResult = BlendOp.overOperator((bgPixel >> 8) & 0xFF, (newPixel >> 8) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
+      int blueResult = BlendOp.overOperator((bgPixel >> 0) & 0xFF, (newPixel >> 0) & 0xFF, alphaFix, invAlphaFix) & 0xFF;
+      int destAlpha = ((bgPixel >> 24) & 0xFF);
+      //work in base 256
+      int alphaResult = ((newAlpha << 8) + (destAlpha << 8) - (newAlpha * destAlpha)) & 0xFF00;
+      //alpha is shifted 16 before already in base + 8
+      int val = (alphaResult << 16) + (redResult << 16) + (greenResult << 8) + blueResult;
+      //	    int normA = ((alphaResult >> 8) & 0xFF);
+      //	    if (((val >> 24) & 0xFF) != normA) {
+      //		  int diff = Math.abs(((val >> 24) & 0xFF) - normA);
+      //		  String str = "Alpha=" + ((val >> 24) & 0xFF) + "!=" + normA + " Diff=" + diff;
+      //		  SystemLog.printDraw(str);
+      //		  if (diff > 2) {
+      //			SystemLog.printDraw(DrawUtilz.debugColor(bgPixel));
+      //			SystemLog.printDraw(DrawUtilz.debugColor(newPixel));
+      //			SystemLog.printDraw("redResult=" + redResult + " greenResult=" + greenResult + " blueResult=" + blueResult);
+      //			SystemLog.printDraw(DrawUtilz.debugColor(val));
+      //		  }
+      //	    }
+      return val;
+   }
+
    public static int mergePixelsOver(int bgPixel, int newPixel, int alphaop) {
       int srcAlpha = ((newPixel >> 24) & 0xFF);
       if (srcAlpha == 255) {
@@ -880,9 +892,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctOverlaySrc(baseRed, blendRed);
-      int greenResult = fctOverlaySrc(baseGreen, blendGreen);
-      int blueResult = fctOverlaySrc(baseBlue, blendBlue);
+      int redResult = BlendOpLut.overlay(baseRed, blendRed);
+      int greenResult = BlendOpLut.overlay(baseGreen, blendGreen);
+      int blueResult = BlendOpLut.overlay(baseBlue, blendBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -912,9 +924,9 @@ public class BlendOp extends ObjectBoc implements IStringable {
       int baseGreen = ((base >> 8) & 0xFF);
       int baseBlue = ((base >> 0) & 0xFF);
 
-      int redResult = fctScreenFct(baseRed, blendRed);
-      int greenResult = fctScreenFct(baseGreen, blendGreen);
-      int blueResult = fctScreenFct(baseBlue, blendBlue);
+      int redResult = BlendOpLut.screen(baseRed, blendRed);
+      int greenResult = BlendOpLut.screen(baseGreen, blendGreen);
+      int blueResult = BlendOpLut.screen(baseBlue, blendBlue);
 
       return mergeAlpha(base, blend, alphaOp, redResult, greenResult, blueResult);
    }
@@ -1307,6 +1319,425 @@ public class BlendOp extends ObjectBoc implements IStringable {
       return base;
    }
 
+   /**
+    * Blends the source rectangle into the w x h rectangle at m,n of the destination with {@link BlendOp#blendComposite(int, int)}.
+    * <br>
+    * <br>
+    * The source has the same layout as the destination.
+    * @param dest
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param src
+    */
+   public void blendRegion(int[] dest, int offset, int scanlength, int m, int n, int w, int h, int[] src) {
+      blendRegion(dest, offset, scanlength, m, n, w, h, src, offset + m + scanlength * n, scanlength);
+   }
+
+   /**
+    * Blends the source rectangle into the w x h rectangle at m,n of the destination with {@link BlendOp#blendComposite(int, int)}.
+    * <br>
+    * <br>
+    * The mode is read once for the whole region. Each mode has its own loop.
+    * <br>
+    * Pixels are blended row by row, left to right, as with a loop calling {@link BlendOp#blendComposite(int, int)}.
+    * Results are thus identical, including for {@link ITechBlend#BLENDING_08_DISSOLVE}.
+    * <br>
+    * Modes with a kernel in {@link BlendOpPacked} use it when enabled.
+    * <br>
+    * <br>
+    * {@link ITechBlend#BLENDING_00_OVER} does not touch the static cache of {@link BlendOp#mergePixelsOver(int, int)}.
+    * Disjoint regions may thus be blended by several threads, each with its own {@link BlendOp},
+    * except for {@link ITechBlend#BLENDING_08_DISSOLVE} and the HSB modes which share state.
+    * @param dest
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param src
+    * @param srcOffset index of the source pixel blended at m,n
+    * @param srcScanlength
+    */
+   public void blendRegion(int[] dest, int offset, int scanlength, int m, int n, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      int alphaOp = modeAlpa;
+      int destRow = offset + m + scanlength * n;
+      if (BlendOpPacked.isEnabled() && BlendOpPacked.blendRegion(mode, alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength)) {
+         return;
+      }
+      switch (mode) {
+         case ITechBlend.BLENDING_01_SRC:
+            for (int i = 0; i < h; i++) {
+               System.arraycopy(src, srcOffset + srcScanlength * i, dest, destRow + scanlength * i, w);
+            }
+            break;
+         case ITechBlend.BLENDING_00_OVER:
+            //local cache instead of the static one of mergePixelsOver
+            int lastDest = 0;
+            int lastSrc = 0;
+            int lastVal = 0;
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  int pixSrc = src[si];
+                  int srcAlpha = (pixSrc >> 24) & 0xFF;
+                  if (srcAlpha == 255) {
+                     dest[di] = pixSrc;
+                  } else if (srcAlpha != 0) {
+                     int pixDest = dest[di];
+                     if (pixDest != lastDest || pixSrc != lastSrc) {
+                        lastVal = mergePixelsOverMix(pixDest, pixSrc, srcAlpha);
+                        lastDest = pixDest;
+                        lastSrc = pixSrc;
+                     }
+                     dest[di] = lastVal;
+                  }
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_02_DARKEN:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergeDarken(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_03_LIGHTEN:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergeLighten(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_04_MERGE_ARGB:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsARGB(dest[di], src[si]);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_07_INVERSE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsInverse(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_08_DISSOLVE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsDissolve(dest[di], src[si], alphaOp, r);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_10_HUE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBHue(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_11_HUE_SAT:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBHueSat(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_12_HUE_LUM:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBHueLum(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_13_SATURATION:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBSat(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_14_SAT_LUM:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBSatLum(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_15_LUMINANCE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHSBLum(dest[di], src[si], baseRS, blendRS);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_16_MULTIPLY_BURN:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsMultiply(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_17_COLOR_BURN:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsColorBurn(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_18_LINEAR_BURN:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsLinearBurn(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_19_SCREEN_DODGE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsScreenDodge(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_20_COLOR_DODGE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsColorDodge(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_21_LINEAR_DODGE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsLinearDodge(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_22_HARD_MIX:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsHardMix(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_23_ADDITION:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsMathAdd(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_24_DIFFERENCE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsMathSubstract(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         case ITechBlend.BLENDING_25_DIVIDE:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = mergePixelsDivide(dest[di], src[si], alphaOp);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+         default:
+            //base value is kept
+            break;
+      }
+   }
+
+   /**
+    * Blends the source rectangle into the destination with {@link BlendOp#blendPixelPorter(int, int)}.
+    * <br>
+    * <br>
+    * The source has the same layout as the destination.
+    * @param dest
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param src
+    */
+   public void blendRegionPorter(int[] dest, int offset, int scanlength, int m, int n, int w, int h, int[] src) {
+      blendRegionPorter(dest, offset, scanlength, m, n, w, h, src, offset + m + scanlength * n, scanlength);
+   }
+
+   /**
+    * Blends the source rectangle into the destination with {@link BlendOp#blendPixelPorter(int, int)}.
+    * <br>
+    * <br>
+    * {@link ITechBlend#OP_01_SRC} and {@link ITechBlend#OP_06_DST} do not look at pixels.
+    * <br>
+    * {@link ITechBlend#OP_00_SRC_OVER} handles empty pixels itself and gives each run of pixels to compose
+    * to {@link BlendOp#blendRegion(int[], int, int, int, int, int, int, int[], int, int)}, which reads the mode once per run.
+    * Pixels are still composed left to right, row by row.
+    * <br>
+    * Other operators go pixel by pixel.
+    * @param dest
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param src
+    * @param srcOffset index of the source pixel blended at m,n
+    * @param srcScanlength
+    */
+   public void blendRegionPorter(int[] dest, int offset, int scanlength, int m, int n, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      int destRow = offset + m + scanlength * n;
+      switch (porterDuffOperator) {
+         case ITechBlend.OP_01_SRC:
+            for (int i = 0; i < h; i++) {
+               System.arraycopy(src, srcOffset + srcScanlength * i, dest, destRow + scanlength * i, w);
+            }
+            break;
+         case ITechBlend.OP_06_DST:
+            break;
+         case ITechBlend.OP_00_SRC_OVER:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               //first pixel of the pending run to compose
+               int runDi = di;
+               int runSi = si;
+               int runLen = 0;
+               for (int j = 0; j < w; j++) {
+                  int base = dest[di];
+                  int blend = src[si];
+                  if (base == emptyDest || blend == emptySrc) {
+                     if (runLen != 0) {
+                        blendRegion(dest, runDi, scanlength, 0, 0, runLen, 1, src, runSi, srcScanlength);
+                        runLen = 0;
+                     }
+                     if (base == emptyDest) {
+                        dest[di] = blendOpacity(blend, overRideOpacityIntValue);
+                     }
+                     //destination is not changed if source is empty
+                  } else {
+                     if (runLen == 0) {
+                        runDi = di;
+                        runSi = si;
+                     }
+                     runLen++;
+                  }
+                  di++;
+                  si++;
+               }
+               if (runLen != 0) {
+                  blendRegion(dest, runDi, scanlength, 0, 0, runLen, 1, src, runSi, srcScanlength);
+               }
+            }
+            break;
+         default:
+            for (int i = 0; i < h; i++) {
+               int di = destRow + scanlength * i;
+               int si = srcOffset + srcScanlength * i;
+               for (int j = 0; j < w; j++) {
+                  dest[di] = blendPixelPorter(dest[di], src[si]);
+                  di++;
+                  si++;
+               }
+            }
+            break;
+      }
+   }
+
    /**
     * Only works for RGB blending.
     * @param blend
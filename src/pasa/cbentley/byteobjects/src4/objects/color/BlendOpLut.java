@@ -0,0 +1,179 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.objects.color;
+
+/**
+ * Lookup tables of the channel functions of {@link BlendOp}.
+ * <br>
+ * <br>
+ * A table has an entry for each pair of 0-255 channel values, at index (a &lt;&lt; 8) | b.
+ * The divisions and branches of the function are thus paid once per table instead of once per channel.
+ * <br>
+ * <br>
+ * Each table is built on first use and shared by all {@link BlendOp}. It is held by a nested class,
+ * so the class loader builds it once even when several render threads ask for it together.
+ * Reads need no lock.
+ * <br>
+ * <br>
+ * Functions whose values fit 0-255 have byte tables.
+ * <li> {@link BlendOpLut#screen(int, int)}
+ * <li> {@link BlendOpLut#overlay(int, int)}
+ * <li> {@link BlendOpLut#linearBurn(int, int)}
+ * <li> {@link BlendOpLut#divide(int, int)}
+ * <br>
+ * <br>
+ * Color burn, color dodge and hard mix go far outside 0-255, down to -64770 and up to 65025.
+ * Those values reach the pixel unclamped under some alpha operators, so their tables keep ints.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class BlendOpLut {
+
+   /**
+    * Number of entries of a table
+    */
+   public static final int SIZE = 256 * 256;
+
+   private static class ColorBurn {
+      static final int[] TABLE = buildColorBurn();
+   }
+
+   private static class ColorDodge {
+      static final int[] TABLE = buildColorDodge();
+   }
+
+   private static class Divide {
+      static final byte[] TABLE = buildDivide();
+   }
+
+   private static class HardMix {
+      static final int[] TABLE = buildHardMix();
+   }
+
+   private static class LinearBurn {
+      static final byte[] TABLE = buildLinearBurn();
+   }
+
+   private static class Overlay {
+      static final byte[] TABLE = buildOverlay();
+   }
+
+   private static class Screen {
+      static final byte[] TABLE = buildScreen();
+   }
+
+   private static int[] buildColorBurn() {
+      int[] t = new int[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = BlendOp.fctColorBurn(a, b);
+         }
+      }
+      return t;
+   }
+
+   private static int[] buildColorDodge() {
+      int[] t = new int[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = BlendOp.fctColorDodge(a, b);
+         }
+      }
+      return t;
+   }
+
+   /**
+    * Column 0 is a division by zero and stays empty, see {@link BlendOpLut#divide(int, int)}
+    * @return
+    */
+   private static byte[] buildDivide() {
+      byte[] t = new byte[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 1; b < 256; b++) {
+            t[(a << 8) | b] = (byte) BlendOp.fctDivideSrc(a, b);
+         }
+      }
+      return t;
+   }
+
+   private static int[] buildHardMix() {
+      int[] t = new int[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = BlendOp.fctHardMix(a, b);
+         }
+      }
+      return t;
+   }
+
+   private static byte[] buildLinearBurn() {
+      byte[] t = new byte[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = (byte) BlendOp.fctLinearBurn(a, b);
+         }
+      }
+      return t;
+   }
+
+   private static byte[] buildOverlay() {
+      byte[] t = new byte[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = (byte) BlendOp.fctOverlaySrc(a, b);
+         }
+      }
+      return t;
+   }
+
+   private static byte[] buildScreen() {
+      byte[] t = new byte[SIZE];
+      for (int a = 0; a < 256; a++) {
+         for (int b = 0; b < 256; b++) {
+            t[(a << 8) | b] = (byte) BlendOp.fctScreenFct(a, b);
+         }
+      }
+      return t;
+   }
+
+   public static int colorBurn(int a, int b) {
+      return ColorBurn.TABLE[(a << 8) | b];
+   }
+
+   public static int colorDodge(int a, int b) {
+      return ColorDodge.TABLE[(a << 8) | b];
+   }
+
+   /**
+    * When b is 0, {@link BlendOp#fctDivideSrc(int, int)} is called and throws the {@link ArithmeticException} of the division by zero
+    * @param a
+    * @param b
+    * @return
+    */
+   public static int divide(int a, int b) {
+      if (b == 0) {
+         return BlendOp.fctDivideSrc(a, b);
+      }
+      return Divide.TABLE[(a << 8) | b] & 0xFF;
+   }
+
+   public static int hardMix(int a, int b) {
+      return HardMix.TABLE[(a << 8) | b];
+   }
+
+   public static int linearBurn(int a, int b) {
+      return LinearBurn.TABLE[(a << 8) | b] & 0xFF;
+   }
+
+   public static int overlay(int a, int b) {
+      return Overlay.TABLE[(a << 8) | b] & 0xFF;
+   }
+
+   public static int screen(int a, int b) {
+      return Screen.TABLE[(a << 8) | b] & 0xFF;
+   }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.objects.color;
+
+/**
+ * Packed ARGB kernels for {@link BlendOp#blendRegion(int[], int, int, int, int, int, int, int[], int, int)}.
+ * <br>
+ * <br>
+ * Channels are not unpacked into 4 ints. Red and blue are processed together in the lanes of {@link BlendOpPacked#MASK_RB},
+ * each lane having 8 spare bits for the carry or the borrow. Green follows in the low lane of a second int.
+ * <br>
+ * Kernels exist for the modes whose channel function is a saturated sum, difference, min or max.
+ * <li> {@link ITechBlend#BLENDING_02_DARKEN}
+ * <li> {@link ITechBlend#BLENDING_03_LIGHTEN}
+ * <li> {@link ITechBlend#BLENDING_18_LINEAR_BURN}
+ * <li> {@link ITechBlend#BLENDING_21_LINEAR_DODGE}
+ * <li> {@link ITechBlend#BLENDING_23_ADDITION}
+ * <li> {@link ITechBlend#BLENDING_24_DIFFERENCE}
+ * <br>
+ * <br>
+ * with the alpha operators {@link ITechBlend#ALPHA_0_OVER}, {@link ITechBlend#ALPHA_1_255}, {@link ITechBlend#ALPHA_3_MIN} and {@link ITechBlend#ALPHA_4_MAX}.
+ * <br>
+ * {@link ITechBlend#ALPHA_0_OVER} mixes translucent source pixels with floats. Those pixels go to the scalar function of the mode.
+ * <br>
+ * <br>
+ * Pixels are identical to the scalar functions of {@link BlendOp}. {@link BlendOpPacked#setEnabled(boolean)} switches the kernels
+ * off for comparing both paths.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class BlendOpPacked {
+
+   /**
+    * Red and blue lanes
+    */
+   public static final int MASK_RB   = 0x00FF00FF;
+
+   /**
+    * Bit above each lane of {@link BlendOpPacked#MASK_RB}
+    */
+   private static final int CARRY_RB = 0x01000100;
+
+   private static boolean   isEnabled = true;
+
+   /**
+    * Saturated sum of each lane
+    * @param a lanes of {@link BlendOpPacked#MASK_RB}
+    * @param b lanes of {@link BlendOpPacked#MASK_RB}
+    * @return
+    */
+   public static int add(int a, int b) {
+      int s = a + b;
+      int c = s & CARRY_RB;
+      return (s | (c - (c >>> 8))) & MASK_RB;
+   }
+
+   private static int alpha(int base, int blend, int alphaOp) {
+      switch (alphaOp) {
+         case ITechBlend.ALPHA_3_MIN:
+            return Math.min(base >>> 24, blend >>> 24) << 24;
+         case ITechBlend.ALPHA_4_MAX:
+            return Math.max(base >>> 24, blend >>> 24) << 24;
+         default:
+            //255 and opaque over
+            return 0xFF000000;
+      }
+   }
+
+   /**
+    * Blends a region with the packed kernel of the mode.
+    * @param mode
+    * @param alphaOp
+    * @param dest
+    * @param destRow index of the first destination pixel
+    * @param scanlength
+    * @param w
+    * @param h
+    * @param src
+    * @param srcOffset
+    * @param srcScanlength
+    * @return false when there is no kernel for the mode and alpha operator. Nothing was blended.
+    */
+   public static boolean blendRegion(int mode, int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      switch (alphaOp) {
+         case ITechBlend.ALPHA_0_OVER:
+         case ITechBlend.ALPHA_1_255:
+         case ITechBlend.ALPHA_3_MIN:
+         case ITechBlend.ALPHA_4_MAX:
+            break;
+         default:
+            return false;
+      }
+      switch (mode) {
+         case ITechBlend.BLENDING_02_DARKEN:
+            regionDarken(alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength);
+            return true;
+         case ITechBlend.BLENDING_03_LIGHTEN:
+            regionLighten(alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength);
+            return true;
+         case ITechBlend.BLENDING_18_LINEAR_BURN:
+            regionLinearBurn(alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength);
+            return true;
+         case ITechBlend.BLENDING_21_LINEAR_DODGE:
+         case ITechBlend.BLENDING_23_ADDITION:
+            regionAddition(alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength);
+            return true;
+         case ITechBlend.BLENDING_24_DIFFERENCE:
+            regionSubstract(alphaOp, dest, destRow, scanlength, w, h, src, srcOffset, srcScanlength);
+            return true;
+         default:
+            return false;
+      }
+   }
+
+   public static boolean isEnabled() {
+      return isEnabled;
+   }
+
+   /**
+    * Each lane is a + b - 255, 0 when negative
+    * @param a
+    * @param b
+    * @return
+    */
+   public static int linearBurn(int a, int b) {
+      int t = a + b + 0x00010001;
+      int c = t & CARRY_RB;
+      return t & (c - (c >>> 8));
+   }
+
+   public static int max(int a, int b) {
+      int c = ((a | CARRY_RB) - b) & CARRY_RB;
+      int m = c - (c >>> 8);
+      return (a & m) | (b & ~m);
+   }
+
+   public static int min(int a, int b) {
+      int c = ((a | CARRY_RB) - b) & CARRY_RB;
+      int m = c - (c >>> 8);
+      return (b & m) | (a & ~m);
+   }
+
+   /**
+    * {@link ITechBlend#BLENDING_02_DARKEN}
+    */
+   private static void regionDarken(int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      boolean isOver = alphaOp == ITechBlend.ALPHA_0_OVER;
+      for (int i = 0; i < h; i++) {
+         int di = destRow + scanlength * i;
+         int si = srcOffset + srcScanlength * i;
+         for (int j = 0; j < w; j++) {
+            int base = dest[di];
+            int blend = src[si];
+            int blendAlpha = blend >>> 24;
+            if (isOver && blendAlpha != 255) {
+               if (blendAlpha != 0) {
+                  dest[di] = BlendOp.mergeDarken(base, blend, alphaOp);
+               }
+            } else {
+               int rb = min(base & MASK_RB, blend & MASK_RB);
+               int g = min((base >>> 8) & 0xFF, (blend >>> 8) & 0xFF);
+               dest[di] = alpha(base, blend, alphaOp) | rb | (g << 8);
+            }
+            di++;
+            si++;
+         }
+      }
+   }
+
+   /**
+    * {@link ITechBlend#BLENDING_03_LIGHTEN}
+    */
+   private static void regionLighten(int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      boolean isOver = alphaOp == ITechBlend.ALPHA_0_OVER;
+      for (int i = 0; i < h; i++) {
+         int di = destRow + scanlength * i;
+         int si = srcOffset + srcScanlength * i;
+         for (int j = 0; j < w; j++) {
+            int base = dest[di];
+            int blend = src[si];
+            int blendAlpha = blend >>> 24;
+            if (isOver && blendAlpha != 255) {
+               if (blendAlpha != 0) {
+                  dest[di] = BlendOp.mergeLighten(base, blend, alphaOp);
+               }
+            } else {
+               int rb = max(base & MASK_RB, blend & MASK_RB);
+               int g = max((base >>> 8) & 0xFF, (blend >>> 8) & 0xFF);
+               dest[di] = alpha(base, blend, alphaOp) | rb | (g << 8);
+            }
+            di++;
+            si++;
+         }
+      }
+   }
+
+   /**
+    * {@link ITechBlend#BLENDING_18_LINEAR_BURN}
+    */
+   private static void regionLinearBurn(int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      boolean isOver = alphaOp == ITechBlend.ALPHA_0_OVER;
+      for (int i = 0; i < h; i++) {
+         int di = destRow + scanlength * i;
+         int si = srcOffset + srcScanlength * i;
+         for (int j = 0; j < w; j++) {
+            int base = dest[di];
+            int blend = src[si];
+            int blendAlpha = blend >>> 24;
+            if (isOver && blendAlpha != 255) {
+               if (blendAlpha != 0) {
+                  dest[di] = BlendOp.mergePixelsLinearBurn(base, blend, alphaOp);
+               }
+            } else {
+               int rb = linearBurn(base & MASK_RB, blend & MASK_RB);
+               int g = linearBurn((base >>> 8) & 0xFF, (blend >>> 8) & 0xFF);
+               dest[di] = alpha(base, blend, alphaOp) | rb | (g << 8);
+            }
+            di++;
+            si++;
+         }
+      }
+   }
+
+   /**
+    * {@link ITechBlend#BLENDING_21_LINEAR_DODGE} and {@link ITechBlend#BLENDING_23_ADDITION}
+    */
+   private static void regionAddition(int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      boolean isOver = alphaOp == ITechBlend.ALPHA_0_OVER;
+      for (int i = 0; i < h; i++) {
+         int di = destRow + scanlength * i;
+         int si = srcOffset + srcScanlength * i;
+         for (int j = 0; j < w; j++) {
+            int base = dest[di];
+            int blend = src[si];
+            int blendAlpha = blend >>> 24;
+            if (isOver && blendAlpha != 255) {
+               if (blendAlpha != 0) {
+                  dest[di] = BlendOp.mergePixelsMathAdd(base, blend, alphaOp);
+               }
+            } else {
+               int rb = add(base & MASK_RB, blend & MASK_RB);
+               int g = add((base >>> 8) & 0xFF, (blend >>> 8) & 0xFF);
+               dest[di] = alpha(base, blend, alphaOp) | rb | (g << 8);
+            }
+            di++;
+            si++;
+         }
+      }
+   }
+
+   /**
+    * {@link ITechBlend#BLENDING_24_DIFFERENCE}
+    */
+   private static void regionSubstract(int alphaOp, int[] dest, int destRow, int scanlength, int w, int h, int[] src, int srcOffset, int srcScanlength) {
+      boolean isOver = alphaOp == ITechBlend.ALPHA_0_OVER;
+      for (int i = 0; i < h; i++) {
+         int di = destRow + scanlength * i;
+         int si = srcOffset + srcScanlength * i;
+         for (int j = 0; j < w; j++) {
+            int base = dest[di];
+            int blend = src[si];
+            int blendAlpha = blend >>> 24;
+            if (isOver && blendAlpha != 255) {
+               if (blendAlpha != 0) {
+                  dest[di] = BlendOp.mergePixelsMathSubstract(base, blend, alphaOp);
+               }
+            } else {
+               int rb = sub(base & MASK_RB, blend & MASK_RB);
+               int g = sub((base >>> 8) & 0xFF, (blend >>> 8) & 0xFF);
+               dest[di] = alpha(base, blend, alphaOp) | rb | (g << 8);
+            }
+            di++;
+            si++;
+         }
+      }
+   }
+
+   /**
+    * Switches the packed kernels on or off for all {@link BlendOp}.
+    * <br>
+    * When off, {@link BlendOp#blendRegion(int[], int, int, int, int, int, int, int[], int, int)} uses the scalar loops.
+    * @param isEnabled
+    */
+   public static void setEnabled(boolean isEnabled) {
+      BlendOpPacked.isEnabled = isEnabled;
+   }
+
+   /**
+    * Each lane is a - b, 0 when negative
+    * @param a
+    * @param b
+    * @return
+    */
+   public static int sub(int a, int b) {
+      int d = (a | CARRY_RB) - b;
+      int c = d & CARRY_RB;
+      return d & (c - (c >>> 8));
+   }
+
+}
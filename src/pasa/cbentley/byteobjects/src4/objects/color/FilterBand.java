@@ -0,0 +1,121 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.objects.color;
+
+import pasa.cbentley.byteobjects.src4.core.ByteObject;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Applies a filter, without its sub filters, or a {@link FilterFused} on a band of rows of a larger rectangle.
+ * <br>
+ * <br>
+ * Created by {@link FilterOperator} when a filter is applied by several threads.
+ * An exception thrown by the filter is kept for the thread waiting for the bands.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class FilterBand extends ObjectBoc implements Runnable {
+
+   private RuntimeException exception;
+
+   private ByteObject       filter;
+
+   private FilterOperator   filterOperator;
+
+   private FilterFused      fused;
+
+   private int              h;
+
+   private int              m;
+
+   private int              n;
+
+   private int              offset;
+
+   private int[]            rgb;
+
+   private int[]            rgbExtra;
+
+   private int              scanlength;
+
+   private int              w;
+
+   /**
+    *
+    * @param boc
+    * @param filterOperator
+    * @param filter null when fused is not
+    * @param fused null when filter is not
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param rgbExtra
+    */
+   public FilterBand(BOCtx boc, FilterOperator filterOperator, ByteObject filter, FilterFused fused, int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra) {
+      super(boc);
+      this.filterOperator = filterOperator;
+      this.filter = filter;
+      this.fused = fused;
+      this.rgb = rgb;
+      this.offset = offset;
+      this.scanlength = scanlength;
+      this.m = m;
+      this.n = n;
+      this.w = w;
+      this.h = h;
+      this.rgbExtra = rgbExtra;
+   }
+
+   /**
+    *
+    * @return null if the band was filtered without error
+    */
+   public RuntimeException getException() {
+      return exception;
+   }
+
+   public void run() {
+      try {
+         if (fused != null) {
+            fused.apply(rgb, offset, scanlength, m, n, w, h);
+         } else {
+            filterOperator.applyColorFilterMain(filter, rgb, offset, scanlength, m, n, w, h, rgbExtra);
+         }
+      } catch (RuntimeException e) {
+         exception = e;
+      }
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, FilterBand.class, 99);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("m", m);
+      dc.appendVarWithSpace("n", n);
+      dc.appendVarWithSpace("w", w);
+      dc.appendVarWithSpace("h", h);
+      dc.appendVarWithSpace("hasException", exception != null);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, FilterBand.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
@@ -0,0 +1,166 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.objects.color;
+
+import pasa.cbentley.byteobjects.src4.core.ByteObject;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.IBOTypesBOC;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.core.src4.logging.Dctx;
+
+/**
+ * Compiled chain of a color filter and its sub filters.
+ * <br>
+ * <br>
+ * The filter tree is flattened in the order of {@link FilterOperator#applyColorFilter(ByteObject, int[], int, int, int, int, int, int, int[])}:
+ * a filter, then each of its sub filters with their own sub filters.
+ * <br>
+ * Runs of consecutive filters accepted by {@link FilterFused#isFusible(ByteObject)} become a {@link FilterFused} stage
+ * applied in a single pass. Any other filter is a barrier applied on its own.
+ * A run of one filter is a barrier too.
+ * <br>
+ * <br>
+ * As in the unfused path, only the root filter is given the extra rgb array.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class FilterChain extends ObjectBoc {
+
+   private ByteObject     filter;
+
+   private FilterOperator filterOperator;
+
+   private ByteObject[]   filters;
+
+   private int            numFilters;
+
+   private int            numStages;
+
+   /**
+    * Barrier filter of each stage, null for a fused stage
+    */
+   private ByteObject[]   stageFilters;
+
+   /**
+    * Fused group of each stage, null for a barrier
+    */
+   private FilterFused[]  stageFuseds;
+
+   public FilterChain(BOCtx boc, FilterOperator filterOperator, ByteObject filter) {
+      super(boc);
+      this.filterOperator = filterOperator;
+      this.filter = filter;
+      filters = new ByteObject[4];
+      flatten(filter);
+      compile();
+   }
+
+   private void addFilter(ByteObject f) {
+      if (numFilters == filters.length) {
+         ByteObject[] newFilters = new ByteObject[filters.length << 1];
+         System.arraycopy(filters, 0, newFilters, 0, numFilters);
+         filters = newFilters;
+      }
+      filters[numFilters] = f;
+      numFilters++;
+   }
+
+   /**
+    * Applies the stages one after the other
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param rgbExtra given to the root filter
+    */
+   public void apply(int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra) {
+      for (int i = 0; i < numStages; i++) {
+         if (stageFuseds[i] != null) {
+            filterOperator.applyColorFilterFused(stageFuseds[i], rgb, offset, scanlength, m, n, w, h);
+         } else {
+            ByteObject f = stageFilters[i];
+            int[] extra = (f == filter) ? rgbExtra : null;
+            filterOperator.applyColorFilterOne(f, rgb, offset, scanlength, m, n, w, h, extra);
+         }
+      }
+   }
+
+   private void compile() {
+      stageFilters = new ByteObject[numFilters];
+      stageFuseds = new FilterFused[numFilters];
+      int i = 0;
+      while (i < numFilters) {
+         int end = i;
+         while (end < numFilters && FilterFused.isFusible(filters[end])) {
+            end++;
+         }
+         int len = end - i;
+         if (len >= 2) {
+            stageFuseds[numStages] = new FilterFused(boc, filters, i, len);
+            numStages++;
+            i = end;
+         } else {
+            stageFilters[numStages] = filters[i];
+            numStages++;
+            i++;
+         }
+      }
+   }
+
+   private void flatten(ByteObject f) {
+      f.checkType(IBOTypesBOC.TYPE_040_COLOR_FILTER);
+      addFilter(f);
+      ByteObject subfilter = null;
+      int i = 0;
+      while ((subfilter = f.getSubOrder(IBOTypesBOC.TYPE_040_COLOR_FILTER, i)) != null) {
+         flatten(subfilter);
+         i++;
+      }
+   }
+
+   public int getNumFilters() {
+      return numFilters;
+   }
+
+   /**
+    * Number of passes over the pixels
+    * @return
+    */
+   public int getNumStages() {
+      return numStages;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, FilterChain.class, 140);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+      for (int i = 0; i < numStages; i++) {
+         if (stageFuseds[i] != null) {
+            dc.nlLvl(stageFuseds[i], "Fused" + i);
+         } else {
+            dc.nlLvl(stageFilters[i], "Barrier" + i);
+         }
+      }
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numFilters", numFilters);
+      dc.appendVarWithSpace("numStages", numStages);
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, FilterChain.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
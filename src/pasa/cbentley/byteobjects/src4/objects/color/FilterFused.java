@@ -0,0 +1,201 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.objects.color;
+
+import pasa.cbentley.byteobjects.src4.core.ByteObject;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.byteobjects.src4.ctx.ObjectBoc;
+import pasa.cbentley.byteobjects.src4.objects.function.Function;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.utils.ColorUtils;
+
+/**
+ * Consecutive point-wise filters applied in a single pass over the pixels.
+ * <br>
+ * <br>
+ * Each pixel goes through all the filters before the next pixel is read.
+ * Fusible filters are
+ * <li> {@link ITechFilter#FILTER_TYPE_00_FUNCTION_ALL}
+ * <li> {@link ITechFilter#FILTER_TYPE_01_GRAYSCALE}
+ * <li> {@link ITechFilter#FILTER_TYPE_04_SIMPLE_ALPHA}
+ * <li> {@link ITechFilter#FILTER_TYPE_10_SEPIA}
+ * <li> {@link ITechFilter#FILTER_TYPE_13_CHANNEL_MOD}
+ * <br>
+ * <br>
+ * The parameters of the filters are read once when the group is built.
+ * Each {@link Function} still sees the pixels in the same order as in its own pass, so counters give the same values.
+ * A group must thus be built for each application of the filters.
+ *
+ * @author Charles Bentley
+ *
+ */
+public class FilterFused extends ObjectBoc implements IBOFilter {
+
+   /**
+    * True when the filter can be part of a {@link FilterFused}
+    * @param filter
+    * @return
+    */
+   public static boolean isFusible(ByteObject filter) {
+      int type = filter.getValue(FILTER_OFFSET_01_TYPE1, 1);
+      switch (type) {
+         case ITechFilter.FILTER_TYPE_00_FUNCTION_ALL:
+         case ITechFilter.FILTER_TYPE_01_GRAYSCALE:
+         case ITechFilter.FILTER_TYPE_04_SIMPLE_ALPHA:
+         case ITechFilter.FILTER_TYPE_10_SEPIA:
+         case ITechFilter.FILTER_TYPE_13_CHANNEL_MOD:
+            return true;
+         default:
+            return false;
+      }
+   }
+
+   private Function[] fcts;
+
+   private boolean[]  isAlphas;
+
+   private boolean[]  isCappeds;
+
+   private int[]      modes;
+
+   private int        numFilters;
+
+   private int[]      types;
+
+   /**
+    * Alpha of {@link ITechFilter#FILTER_TYPE_04_SIMPLE_ALPHA} or operand of {@link ITechFilter#FILTER_TYPE_13_CHANNEL_MOD}
+    */
+   private int[]      values;
+
+   /**
+    *
+    * @param boc
+    * @param filters
+    * @param start index of the first filter of the group
+    * @param len number of filters, all accepted by {@link FilterFused#isFusible(ByteObject)}
+    */
+   public FilterFused(BOCtx boc, ByteObject[] filters, int start, int len) {
+      super(boc);
+      numFilters = len;
+      types = new int[len];
+      fcts = new Function[len];
+      values = new int[len];
+      modes = new int[len];
+      isAlphas = new boolean[len];
+      isCappeds = new boolean[len];
+      for (int i = 0; i < len; i++) {
+         ByteObject filter = filters[start + i];
+         types[i] = filter.getValue(FILTER_OFFSET_01_TYPE1, 1);
+         switch (types[i]) {
+            case ITechFilter.FILTER_TYPE_00_FUNCTION_ALL:
+               fcts[i] = boc.getFilterFactory().getFilterFunction(filter);
+               break;
+            case ITechFilter.FILTER_TYPE_04_SIMPLE_ALPHA:
+               values[i] = filter.getValue(FILTER_OFFSET_04_FUNCTION2, 2);
+               break;
+            case ITechFilter.FILTER_TYPE_13_CHANNEL_MOD:
+               isAlphas[i] = filter.hasFlag(FILTER_OFFSET_02_FLAG1, 1);
+               values[i] = filter.get2(FILTER_OFFSET_04_FUNCTION2);
+               modes[i] = filter.get1(FILTER_OFFSET_05_COLOR4);
+               isCappeds[i] = filter.hasFlag(FILTER_OFFSET_02_FLAG1, 16);
+               break;
+            default:
+               break;
+         }
+      }
+   }
+
+   /**
+    * Applies all the filters of the group in one pass
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    */
+   public void apply(int[] rgb, int offset, int scanlength, int m, int n, int w, int h) {
+      for (int i = 0; i < h; i++) {
+         int index = offset + m + (scanlength * (n + i));
+         for (int j = 0; j < w; j++) {
+            rgb[index] = filterPixel(rgb[index]);
+            index++;
+         }
+      }
+   }
+
+   /**
+    * Pixel after all the filters of the group
+    * @param pix
+    * @return
+    */
+   public int filterPixel(int pix) {
+      for (int k = 0; k < numFilters; k++) {
+         switch (types[k]) {
+            case ITechFilter.FILTER_TYPE_00_FUNCTION_ALL:
+               pix = fcts[k].fx(pix);
+               break;
+            case ITechFilter.FILTER_TYPE_01_GRAYSCALE:
+               pix = ColorUtils.pixelToGrayScale(pix);
+               break;
+            case ITechFilter.FILTER_TYPE_04_SIMPLE_ALPHA:
+               pix = (values[k] << 24) | (pix & 0x00FFFFFF);
+               break;
+            case ITechFilter.FILTER_TYPE_10_SEPIA:
+               pix = ColorUtils.pixelToSepia(pix, FilterOperator.SEPIA_DEPTH, FilterOperator.SEPIA_INTENSITY);
+               break;
+            case ITechFilter.FILTER_TYPE_13_CHANNEL_MOD:
+               pix = FilterOperator.filterChannelMOD(pix, isAlphas[k], values[k], modes[k], isCappeds[k]);
+               break;
+            default:
+               break;
+         }
+      }
+      return pix;
+   }
+
+   public int getNumFilters() {
+      return numFilters;
+   }
+
+   /**
+    * True when the group has no {@link Function}, which count their calls.
+    * <br>
+    * The group may then be applied on row bands by several threads.
+    * @return
+    */
+   public boolean isBandSafe() {
+      for (int k = 0; k < numFilters; k++) {
+         if (types[k] == ITechFilter.FILTER_TYPE_00_FUNCTION_ALL) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, FilterFused.class, 180);
+      toStringPrivate(dc);
+      super.toString(dc.sup());
+   }
+
+   private void toStringPrivate(Dctx dc) {
+      dc.appendVarWithSpace("numFilters", numFilters);
+      for (int k = 0; k < numFilters; k++) {
+         dc.appendVarWithSpace("type" + k, types[k]);
+      }
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, FilterFused.class);
+      toStringPrivate(dc);
+      super.toString1Line(dc.sup1Line());
+   }
+
+   //#enddebug
+
+}
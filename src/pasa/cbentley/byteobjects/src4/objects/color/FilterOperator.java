@@ -15,6 +15,31 @@ import pasa.cbentley.core.src4.utils.TransformUtils;
 
 public class FilterOperator extends BOAbstractOperator implements IBOFilter {
 
+   public static final int MIN_BAND_ROWS_DEFAULT = 64;
+
+   /**
+    * Play around with this. 20 works well and was recommended
+    * by another developer. 0 produces black/white image
+    */
+   public static final int SEPIA_DEPTH           = 20;
+
+   /**
+    * value between 0 and 255;
+    */
+   public static final int SEPIA_INTENSITY       = 30;
+
+   /**
+    * Chains of filters are compiled by {@link FilterChain}
+    */
+   private boolean         isFused               = true;
+
+   private int             minBandRows           = MIN_BAND_ROWS_DEFAULT;
+
+   /**
+    * 1 for serial execution
+    */
+   private int             numThreads            = 1;
+
    public FilterOperator(BOCtx drc) {
       super(drc);
    }
@@ -27,10 +52,128 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
       applyColorFilter(filter, rgb, offset, scanlength, m, n, w, h, null);
    }
 
+   /**
+    * Applies the filter and its sub filters.
+    * <br>
+    * <br>
+    * When {@link FilterOperator#setParallel(int, int)} allows it, a filter accepted by {@link FilterOperator#isBandSafe(ByteObject)}
+    * is applied on row bands by several threads. Each band gets its own {@link BlendOp}.
+    * The result is identical to the serial execution.
+    * <br>
+    * Sub filters are applied one after the other, each waiting for all the bands of the previous one.
+    * <br>
+    * <br>
+    * When {@link FilterOperator#setFused(boolean)} is on, a filter with sub filters is compiled by {@link FilterChain}.
+    * Consecutive point-wise filters are then applied in a single pass.
+    * @param filter
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param rgbExtra
+    */
    public void applyColorFilter(ByteObject filter, int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra) {
       if (filter == null)
          return;
       filter.checkType(IBOTypesBOC.TYPE_040_COLOR_FILTER);
+      if (isFused && filter.getSubOrder(IBOTypesBOC.TYPE_040_COLOR_FILTER, 0) != null) {
+         FilterChain chain = new FilterChain(boc, this, filter);
+         chain.apply(rgb, offset, scanlength, m, n, w, h, rgbExtra);
+         return;
+      }
+      applyColorFilterOne(filter, rgb, offset, scanlength, m, n, w, h, rgbExtra);
+      //apply subfilters, linked together
+      ByteObject subfilter = null;
+      int i = 0;
+      while ((subfilter = filter.getSubOrder(IBOTypesBOC.TYPE_040_COLOR_FILTER, i)) != null) {
+         applyColorFilter(subfilter, rgb, offset, scanlength, m, n, w, h);
+         i++;
+      }
+      //SystemLog.printDraw(RgbImage.debugAlphas(rgb, w, h));
+   }
+
+   /**
+    * Runs the first band in the calling thread and the others in threads from {@link FilterOperator#createThread(Runnable)}.
+    * <br>
+    * Returns once all bands are done. An interrupt does not stop the wait, it is restored before returning.
+    */
+   private void applyColorFilterBands(ByteObject filter, FilterFused fused, int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra, int numBands) {
+      int rowsPerBand = (h + numBands - 1) / numBands;
+      FilterBand[] bands = new FilterBand[numBands];
+      Thread[] threads = new Thread[numBands];
+      for (int b = 0; b < numBands; b++) {
+         int y = b * rowsPerBand;
+         int bandH = Math.min(rowsPerBand, h - y);
+         if (bandH <= 0) {
+            break;
+         }
+         bands[b] = new FilterBand(boc, this, filter, fused, rgb, offset, scanlength, m, n + y, w, bandH, rgbExtra);
+         if (b != 0) {
+            threads[b] = createThread(bands[b]);
+            threads[b].start();
+         }
+      }
+      bands[0].run();
+      boolean isInterrupted = false;
+      for (int b = 1; b < numBands; b++) {
+         if (threads[b] != null) {
+            while (true) {
+               try {
+                  threads[b].join();
+                  break;
+               } catch (InterruptedException e) {
+                  //the band still writes in rgb
+                  isInterrupted = true;
+               }
+            }
+         }
+      }
+      if (isInterrupted) {
+         Thread.currentThread().interrupt();
+      }
+      for (int b = 0; b < numBands; b++) {
+         if (bands[b] != null && bands[b].getException() != null) {
+            throw bands[b].getException();
+         }
+      }
+   }
+
+   /**
+    * Applies a group of fused filters, on row bands when possible.
+    * @param fused
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    */
+   void applyColorFilterFused(FilterFused fused, int[] rgb, int offset, int scanlength, int m, int n, int w, int h) {
+      int numBands = getNumBands(h);
+      if (numBands > 1 && fused.isBandSafe()) {
+         applyColorFilterBands(null, fused, rgb, offset, scanlength, m, n, w, h, null, numBands);
+      } else {
+         fused.apply(rgb, offset, scanlength, m, n, w, h);
+      }
+   }
+
+   /**
+    * Applies the filter without its sub filters
+    * @param filter
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param rgbExtra
+    */
+   void applyColorFilterMain(ByteObject filter, int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra) {
       final int type = filter.getValue(FILTER_OFFSET_01_TYPE1, 1);
       switch (type) {
          case ITechFilter.FILTER_TYPE_00_FUNCTION_ALL:
@@ -88,14 +231,36 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
          default:
             throw new IllegalArgumentException("Unknown Color Filter Type " + type);
       }
-      //apply subfilters, linked together
-      ByteObject subfilter = null;
-      int i = 0;
-      while ((subfilter = filter.getSubOrder(IBOTypesBOC.TYPE_040_COLOR_FILTER, i)) != null) {
-         applyColorFilter(subfilter, rgb, offset, scanlength, m, n, w, h);
-         i++;
+   }
+
+   /**
+    * Applies the filter without its sub filters, on row bands when possible.
+    * @param filter
+    * @param rgb
+    * @param offset
+    * @param scanlength
+    * @param m
+    * @param n
+    * @param w
+    * @param h
+    * @param rgbExtra
+    */
+   void applyColorFilterOne(ByteObject filter, int[] rgb, int offset, int scanlength, int m, int n, int w, int h, int[] rgbExtra) {
+      int numBands = getNumBands(h);
+      if (numBands > 1 && isBandSafe(filter)) {
+         applyColorFilterBands(filter, null, rgb, offset, scanlength, m, n, w, h, rgbExtra, numBands);
+      } else {
+         applyColorFilterMain(filter, rgb, offset, scanlength, m, n, w, h, rgbExtra);
       }
-      //SystemLog.printDraw(RgbImage.debugAlphas(rgb, w, h));
+   }
+
+   /**
+    * Creates the threads running the bands of a filter.
+    * @param r
+    * @return
+    */
+   protected Thread createThread(Runnable r) {
+      return new Thread(r, "FilterBand");
    }
 
    protected void filterAlpha(ByteObject filter, int[] rgb, int offset, int scanlength, int m, int n, int w, int h) {
@@ -279,35 +444,7 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
       for (int i = 0; i < h; i++) {
          int index = offset + m + (scanlength * (n + i));
          for (int j = 0; j < w; j++) {
-            int val = rgb[index];
-            int count = 0;
-            int a = (val >> 24) & 0xFF;
-            int red = (val >> 16) & 0xFF;
-            int green = val >> 8 & 0xFF;
-            int blue = val & 0xFF;
-            if (pA) {
-               if (fctV == 0) {
-                  a = fct;
-               } else if (fctV == 1) {
-                  a = a + fct;
-                  if (isCapped) {
-                     if (a > 255) {
-                        a = 255;
-                     }
-                  }
-               } else if (fctV == 2) {
-                  a = a - fct;
-                  if (isCapped) {
-                     if (a < 0) {
-                        a = 0;
-                     }
-                  }
-               }
-            }
-
-            val = (a << 24) + (red << 16) + (green << 8) + blue;
-
-            rgb[index] = val;
+            rgb[index] = filterChannelMOD(rgb[index], pA, fct, fctV, isCapped);
             index++;
          }
 
@@ -315,6 +452,42 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
 
    }
 
+   /**
+    * Pixel of {@link FilterOperator#filterChannelMOD(int[], int, int, int, int, int, int, ByteObject)}
+    * @param val
+    * @param pA
+    * @param fct
+    * @param fctV
+    * @param isCapped
+    * @return
+    */
+   public static int filterChannelMOD(int val, boolean pA, int fct, int fctV, boolean isCapped) {
+      int a = (val >> 24) & 0xFF;
+      int red = (val >> 16) & 0xFF;
+      int green = val >> 8 & 0xFF;
+      int blue = val & 0xFF;
+      if (pA) {
+         if (fctV == 0) {
+            a = fct;
+         } else if (fctV == 1) {
+            a = a + fct;
+            if (isCapped) {
+               if (a > 255) {
+                  a = 255;
+               }
+            }
+         } else if (fctV == 2) {
+            a = a - fct;
+            if (isCapped) {
+               if (a < 0) {
+                  a = 0;
+               }
+            }
+         }
+      }
+      return (a << 24) + (red << 16) + (green << 8) + blue;
+   }
+
    /**
     * Modifies each pixel based on a function each channel
     * The filter has a root color. if a pixel has its channel value, it recieves
@@ -537,17 +710,7 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
       int wOffset = filter.get2(FILTER_OFFSET_12_W2);
       int hOffset = filter.get2(FILTER_OFFSET_13_H2);
 
-      int index = 0;
-      for (int i = 0; i < h; i++) {
-         index = offset + m + (scanlength * (n + i));
-         for (int j = 0; j < w; j++) {
-            int rgbSrc = rgbExtra[index];
-            int rgbDest = rgb[index];
-            int resultBlend = blendOp.blendComposite(rgbDest, rgbSrc);
-            rgb[index] = resultBlend;
-            index++;
-         }
-      }
+      blendOp.blendRegion(rgb, offset, scanlength, m, n, w, h, rgbExtra);
    }
 
    /**
@@ -565,7 +728,6 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
     */
    public void filterBlendSelf(int[] rgb, int offset, int scanlength, int m, int n, int w, int h, ByteObject filter) {
 
-      int index = 0;
       BlendOp blendOp = null;
       if (filter.hasFlag(FILTER_OFFSET_02_FLAG1, FILTER_FLAG_2_BLENDER)) {
          ByteObject blender = filter.getSubFirst(IBOTypesBOC.TYPE_039_BLENDER);
@@ -587,18 +749,7 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
       if (transform != 0) {
          rgbTransformed = TransformUtils.transform(rgb, w, h, transform);
       }
-      int count = 0;
-      for (int i = 0; i < h; i++) {
-         index = offset + m + (scanlength * (n + i));
-         for (int j = 0; j < w; j++) {
-            int rgbSrc = rgbTransformed[count];
-            int rgbDest = rgb[index];
-            int resultBlend = blendOp.blendComposite(rgbDest, rgbSrc);
-            rgb[index] = resultBlend;
-            count++;
-            index++;
-         }
-      }
+      blendOp.blendRegion(rgb, offset, scanlength, m, n, w, h, rgbTransformed, 0, w);
    }
 
    /**
@@ -663,12 +814,8 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
    }
 
    public void filterSepia(int[] rgb, int offset, int scanlength, int m, int n, int w, int h, ByteObject filter) {
-      // Play around with this. 20 works well and was recommended
-      // by another developer. 0 produces black/white image
-      int sepiaDepth = 20;
-
-      //value between 0 and 255;
-      int sepiaIntensity = 30;
+      int sepiaDepth = SEPIA_DEPTH;
+      int sepiaIntensity = SEPIA_INTENSITY;
 
       for (int i = 0; i < h; i++) {
          int index = offset + m + (scanlength * (n + i));
@@ -1382,4 +1529,108 @@ public class FilterOperator extends BOAbstractOperator implements IBOFilter {
       }
    }
 
+   /**
+    * Mode of the {@link BlendOp} created by {@link FilterOperator#filterBlend(int[], int, int, int, int, int, int, ByteObject, int[])}
+    * @param filter
+    * @return
+    */
+   private int getBlendMode(ByteObject filter) {
+      if (filter.hasFlag(FILTER_OFFSET_02_FLAG1, FILTER_FLAG_2_BLENDER)) {
+         ByteObject blender = filter.getSubFirst(IBOTypesBOC.TYPE_039_BLENDER);
+         return blender.get2(IBOBlend.BLEND_OFFSET_03_TYPE2);
+      } else {
+         return filter.get1(FILTER_OFFSET_10_BLEND1);
+      }
+   }
+
+   /**
+    * Number of bands for applying a band safe filter on h rows. 1 when filters are applied serially.
+    * @param h
+    * @return
+    */
+   private int getNumBands(int h) {
+      if (numThreads <= 1) {
+         return 1;
+      }
+      return Math.max(1, Math.min(numThreads, h / minBandRows));
+   }
+
+   public int getNumThreads() {
+      return numThreads;
+   }
+
+   /**
+    * True when applying the filter on row bands separately gives the same pixels as applying it once.
+    * <br>
+    * <br>
+    * Those are filters whose pixels depend only on the pixel itself or on its row.
+    * <li> {@link ITechFilter#FILTER_TYPE_01_GRAYSCALE}
+    * <li> {@link ITechFilter#FILTER_TYPE_03_ALPHA_TO_COLOR}
+    * <li> {@link ITechFilter#FILTER_TYPE_04_SIMPLE_ALPHA}
+    * <li> {@link ITechFilter#FILTER_TYPE_10_SEPIA}
+    * <li> {@link ITechFilter#FILTER_TYPE_11_HORIZ_AVERAGE}
+    * <li> {@link ITechFilter#FILTER_TYPE_12_HORIZ_AVERAGE_NEOM}
+    * <li> {@link ITechFilter#FILTER_TYPE_13_CHANNEL_MOD}
+    * <li> {@link ITechFilter#FILTER_TYPE_15_BLEND_EXTRA} except for the dissolve and HSB modes which share state between pixels
+    * <br>
+    * <br>
+    * {@link ITechFilter#FILTER_TYPE_00_FUNCTION_ALL} is not. A {@link Function} counts its calls and its output may depend on the pixels before.
+    * <br>
+    * Neither are the neighbourhood filters. {@link FilterOperator#filterSmootherBorder(int[], int, int, int, int, int, int)},
+    * {@link FilterOperator#filterTouches(int[], int, int, int, int, int, int, ByteObject)} and the others
+    * update pixels in place and read neighbours already updated, or drive a {@link Function} down whole columns.
+    * A band would need the output of the band above it.
+    * @param filter
+    * @return
+    */
+   public boolean isBandSafe(ByteObject filter) {
+      int type = filter.getValue(FILTER_OFFSET_01_TYPE1, 1);
+      switch (type) {
+         case ITechFilter.FILTER_TYPE_01_GRAYSCALE:
+         case ITechFilter.FILTER_TYPE_03_ALPHA_TO_COLOR:
+         case ITechFilter.FILTER_TYPE_04_SIMPLE_ALPHA:
+         case ITechFilter.FILTER_TYPE_10_SEPIA:
+         case ITechFilter.FILTER_TYPE_11_HORIZ_AVERAGE:
+         case ITechFilter.FILTER_TYPE_12_HORIZ_AVERAGE_NEOM:
+         case ITechFilter.FILTER_TYPE_13_CHANNEL_MOD:
+            return true;
+         case ITechFilter.FILTER_TYPE_15_BLEND_EXTRA:
+            int mode = getBlendMode(filter);
+            if (mode == ITechBlend.BLENDING_08_DISSOLVE) {
+               return false;
+            }
+            return mode < ITechBlend.BLENDING_10_HUE || mode > ITechBlend.BLENDING_15_LUMINANCE;
+         default:
+            return false;
+      }
+   }
+
+   /**
+    * True when chains of point-wise filters are applied in a single pass. See {@link FilterOperator#setFused(boolean)}
+    * @return
+    */
+   public boolean isFused() {
+      return isFused;
+   }
+
+   /**
+    * Applies chains of point-wise filters in a single pass, see {@link FilterChain}.
+    * @param isFused false to apply each filter of a chain in its own pass
+    */
+   public void setFused(boolean isFused) {
+      this.isFused = isFused;
+   }
+
+   /**
+    * Applies filters on row bands with up to numThreads threads.
+    * <br>
+    * A band has at least minBandRows rows. Smaller images are filtered serially.
+    * @param numThreads 1 for serial execution
+    * @param minBandRows
+    */
+   public void setParallel(int numThreads, int minBandRows) {
+      this.numThreads = numThreads;
+      this.minBandRows = Math.max(1, minBandRows);
+   }
+
 }
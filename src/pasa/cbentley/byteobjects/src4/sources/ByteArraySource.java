@@ -39,7 +39,7 @@ public class ByteArraySource extends MemorySource {
     */
    public ByteArraySource(BOCtx boc, String id) {
       this(boc, id, new byte[0], 0);
-      flags = MS_FLAG_1_IDS | MS_FLAG_2_WRITABLE;
+      flags = MS_FLAG_1_IDS | MS_FLAG_2_WRITABLE | MS_FLAG_4_CONCURRENT_LOAD;
    }
 
    /**
@@ -63,6 +63,7 @@ public class ByteArraySource extends MemorySource {
       if (array == null)
          throw new NullPointerException();
       this.offset = offset;
+      this.flags = MS_FLAG_4_CONCURRENT_LOAD;
       this.array = new byte[1][];
       this.array[0] = new byte[array.length - offset];
       System.arraycopy(array, offset, this.array[0], 0, this.array[0].length);
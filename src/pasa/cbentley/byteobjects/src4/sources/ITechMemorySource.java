@@ -8,12 +8,17 @@ import pasa.cbentley.core.src4.interfaces.ITech;
 
 public interface ITechMemorySource extends ITech {
 
-   public static final int MS_FLAG_1_IDS      = 1;
+   public static final int MS_FLAG_1_IDS             = 1;
 
-   public static final int MS_FLAG_2_WRITABLE = 1 << 1;
+   public static final int MS_FLAG_2_WRITABLE        = 1 << 1;
 
    /**
     * Flagged when the source has been registered at {@link RootSource}
     */
-   public static final int MS_FLAG_3_ROOTED   = 1 << 2;
+   public static final int MS_FLAG_3_ROOTED          = 1 << 2;
+
+   /**
+    * {@link MemorySource#load(int)} may be called by several threads at the same time
+    */
+   public static final int MS_FLAG_4_CONCURRENT_LOAD = 1 << 3;
 }
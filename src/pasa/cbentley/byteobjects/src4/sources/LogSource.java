@@ -0,0 +1,550 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.sources;
+
+import pasa.cbentley.byteobjects.src4.core.ByteController;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.utils.IntUtils;
+
+/**
+ * Append only {@link MemorySource}. Saves never overwrite, they append records to a log.
+ * <br>
+ * <br>
+ * A record is
+ * <li> 4 bytes : instance ID
+ * <li> 1 byte : {@link LogSource#TYPE_FULL} or {@link LogSource#TYPE_PATCH}
+ * <li> 4 bytes : size of the payload
+ * <li> payload
+ * <br>
+ * <br>
+ * A full record holds the whole block. A patch record holds the byte runs that changed since the previous version
+ * of a block of the same length:
+ * 4 bytes for the number of runs, then for each run its offset, its length and its bytes.
+ * <br>
+ * When the {@link ByteController} saves a whole gid/iid block in which a few bytes changed, only those bytes
+ * and the record headers are appended.
+ * <br>
+ * <br>
+ * An index in memory keeps, for each instance ID, the offset of its last full record and of the patches that follow.
+ * <br>
+ * <br>
+ * <b>Compaction</b>
+ * <br>
+ * Records of replaced versions are garbage. Once the garbage exceeds {@link LogSource#getCompactRatio()} percent of the log,
+ * a background thread rewrites the current version of each block as a single full record.
+ * Records appended during the compaction are carried over.
+ * <br>
+ * <br>
+ * The log can be persisted with {@link LogSource#toByteArray()} and opened again with {@link LogSource#LogSource(BOCtx, String, byte[])}.
+ * An incomplete last record, e.g. from an interrupted write, is ignored.
+ *
+ * @author Charles Bentley
+ * @see MappedSource
+ */
+public class LogSource extends MemorySource implements Runnable {
+
+   public static final int COMPACT_MIN_SIZE_DEFAULT = 4096;
+
+   public static final int COMPACT_RATIO_DEFAULT    = 50;
+
+   /**
+    * Maximum number of patches after a full record. The next save writes a full record.
+    */
+   public static final int MAX_PATCHES              = 8;
+
+   public static final int RECORD_HEADER_SIZE       = 9;
+
+   /**
+    * Runs of changed bytes closer than this are merged in one run
+    */
+   public static final int RUN_GAP                  = 8;
+
+   public static final int TYPE_FULL                = 1;
+
+   public static final int TYPE_PATCH               = 2;
+
+   /**
+    * Number of bytes appended by saves since creation
+    */
+   private int             bytesWritten;
+
+   /**
+    * Number of bytes of the records of the current version of each ID
+    */
+   private int[]           chainBytes;
+
+   private int             compactMinSize;
+
+   private int             compactRatio;
+
+   /**
+    * Offset of the last full record of each ID. -1 when none
+    */
+   private int[]           fullOffsets;
+
+   private String          id;
+
+   private boolean         isCompacting;
+
+   /**
+    * Number of bytes of all current versions
+    */
+   private int             liveBytes;
+
+   private byte[]          log;
+
+   private int             logLen;
+
+   private int             numCompactions;
+
+   private int             numIDs;
+
+   private int[]           numPatches;
+
+   private int[][]         patchOffsets;
+
+   /**
+    * Empty log
+    * @param boc
+    * @param id
+    */
+   public LogSource(BOCtx boc, String id) {
+      super(boc);
+      this.id = id;
+      flags = MS_FLAG_1_IDS | MS_FLAG_2_WRITABLE | MS_FLAG_4_CONCURRENT_LOAD;
+      compactMinSize = COMPACT_MIN_SIZE_DEFAULT;
+      compactRatio = COMPACT_RATIO_DEFAULT;
+      log = new byte[64];
+      resetIndex();
+   }
+
+   /**
+    * Opens a log returned by {@link LogSource#toByteArray()}. The array is not copied.
+    * @param boc
+    * @param id
+    * @param data
+    */
+   public LogSource(BOCtx boc, String id, byte[] data) {
+      this(boc, id);
+      log = data;
+      logLen = indexLog(data.length);
+   }
+
+   private int append(int iid, int type, int size) {
+      int total = RECORD_HEADER_SIZE + size;
+      if (logLen + total > log.length) {
+         int len = Math.max(logLen + total, log.length + (log.length >> 1));
+         //the compaction thread keeps the old array
+         byte[] nl = new byte[len];
+         System.arraycopy(log, 0, nl, 0, logLen);
+         log = nl;
+      }
+      int offset = logLen;
+      IntUtils.writeIntBE(log, offset, iid);
+      log[offset + 4] = (byte) type;
+      IntUtils.writeIntBE(log, offset + 5, size);
+      logLen += total;
+      bytesWritten += total;
+      return offset;
+   }
+
+   private void checkCompaction() {
+      if (!isCompacting && logLen >= compactMinSize) {
+         int garbage = logLen - liveBytes;
+         if (garbage * 100L > (long) compactRatio * logLen) {
+            isCompacting = true;
+            createThread(this).start();
+         }
+      }
+   }
+
+   /**
+    * Rewrites the current version of each ID as a single full record.
+    * <br>
+    * The copy is done without holding the lock of the source. Saves are not blocked.
+    */
+   public void compact() {
+      byte[] snapLog = null;
+      int snapLen = 0;
+      int num = 0;
+      int[] fulls = null;
+      int[] nps = null;
+      int[][] patches = null;
+      synchronized (this) {
+         snapLog = log;
+         snapLen = logLen;
+         num = numIDs;
+         fulls = new int[num];
+         nps = new int[num];
+         patches = new int[num][];
+         System.arraycopy(fullOffsets, 0, fulls, 0, num);
+         System.arraycopy(numPatches, 0, nps, 0, num);
+         for (int i = 0; i < num; i++) {
+            if (numPatches[i] != 0) {
+               patches[i] = new int[numPatches[i]];
+               System.arraycopy(patchOffsets[i], 0, patches[i], 0, numPatches[i]);
+            }
+         }
+      }
+      //records below snapLen are never modified. reading them is safe
+      byte[][] versions = new byte[num][];
+      int total = 0;
+      for (int i = 0; i < num; i++) {
+         if (fulls[i] != -1) {
+            versions[i] = materialize(snapLog, fulls[i], patches[i], nps[i]);
+            total += RECORD_HEADER_SIZE + versions[i].length;
+         }
+      }
+      synchronized (this) {
+         int tail = logLen - snapLen;
+         byte[] nl = new byte[total + tail + (total >> 2)];
+         int offset = 0;
+         for (int i = 0; i < num; i++) {
+            byte[] v = versions[i];
+            if (v != null) {
+               IntUtils.writeIntBE(nl, offset, i);
+               nl[offset + 4] = (byte) TYPE_FULL;
+               IntUtils.writeIntBE(nl, offset + 5, v.length);
+               System.arraycopy(v, 0, nl, offset + RECORD_HEADER_SIZE, v.length);
+               offset += RECORD_HEADER_SIZE + v.length;
+            }
+         }
+         //records appended during the compaction
+         System.arraycopy(log, snapLen, nl, offset, tail);
+         log = nl;
+         logLen = indexLog(offset + tail);
+         numCompactions++;
+      }
+   }
+
+   /**
+    * Creates the compaction thread.
+    * @param r
+    * @return
+    */
+   protected Thread createThread(Runnable r) {
+      return new Thread(r, "LogSource");
+   }
+
+   private void ensureIDs(int num) {
+      if (num > fullOffsets.length) {
+         int size = Math.max(num, fullOffsets.length << 1);
+         int[] nf = new int[size];
+         System.arraycopy(fullOffsets, 0, nf, 0, fullOffsets.length);
+         for (int i = fullOffsets.length; i < size; i++) {
+            nf[i] = -1;
+         }
+         fullOffsets = nf;
+         int[] nn = new int[size];
+         System.arraycopy(numPatches, 0, nn, 0, numPatches.length);
+         numPatches = nn;
+         int[] nc = new int[size];
+         System.arraycopy(chainBytes, 0, nc, 0, chainBytes.length);
+         chainBytes = nc;
+         int[][] np = new int[size][];
+         System.arraycopy(patchOffsets, 0, np, 0, patchOffsets.length);
+         patchOffsets = np;
+      }
+      if (num > numIDs) {
+         numIDs = num;
+      }
+   }
+
+   public synchronized int getBytesWritten() {
+      return bytesWritten;
+   }
+
+   /**
+    * Percentage of garbage in the log above which a compaction is started
+    * @return
+    */
+   public int getCompactRatio() {
+      return compactRatio;
+   }
+
+   public synchronized int getLogLength() {
+      return logLen;
+   }
+
+   public synchronized int getNumCompactions() {
+      return numCompactions;
+   }
+
+   public String getSrcID() {
+      return id;
+   }
+
+   /**
+    * IDs with a version
+    */
+   public synchronized int[] getValidIDs() {
+      int count = 0;
+      for (int i = 0; i < numIDs; i++) {
+         if (fullOffsets[i] != -1) {
+            count++;
+         }
+      }
+      int[] ids = new int[count];
+      count = 0;
+      for (int i = 0; i < numIDs; i++) {
+         if (fullOffsets[i] != -1) {
+            ids[count++] = i;
+         }
+      }
+      return ids;
+   }
+
+   /**
+    * Indexes the records of {@link LogSource#log} up to len
+    * @param len
+    * @return end of the last complete record
+    */
+   private int indexLog(int len) {
+      resetIndex();
+      int offset = 0;
+      while (offset + RECORD_HEADER_SIZE <= len) {
+         int iid = IntUtils.readIntBE(log, offset);
+         int type = log[offset + 4];
+         int size = IntUtils.readIntBE(log, offset + 5);
+         if (iid < 0 || size < 0 || offset + RECORD_HEADER_SIZE + size > len) {
+            //incomplete or corrupted tail
+            break;
+         }
+         indexRecord(iid, type, offset, RECORD_HEADER_SIZE + size);
+         offset += RECORD_HEADER_SIZE + size;
+      }
+      return offset;
+   }
+
+   private void indexRecord(int iid, int type, int offset, int recordSize) {
+      ensureIDs(iid + 1);
+      if (type == TYPE_FULL) {
+         liveBytes -= chainBytes[iid];
+         fullOffsets[iid] = offset;
+         numPatches[iid] = 0;
+         chainBytes[iid] = recordSize;
+         liveBytes += recordSize;
+      } else if (type == TYPE_PATCH && fullOffsets[iid] != -1) {
+         int np = numPatches[iid];
+         if (patchOffsets[iid] == null) {
+            patchOffsets[iid] = new int[MAX_PATCHES];
+         } else if (np == patchOffsets[iid].length) {
+            int[] po = new int[np << 1];
+            System.arraycopy(patchOffsets[iid], 0, po, 0, np);
+            patchOffsets[iid] = po;
+         }
+         patchOffsets[iid][np] = offset;
+         numPatches[iid] = np + 1;
+         chainBytes[iid] += recordSize;
+         liveBytes += recordSize;
+      }
+      //patches without full records are garbage
+   }
+
+   public byte[] load() {
+      return load(0);
+   }
+
+   /**
+    * Current version of the block
+    * @param id
+    * @return empty array when none
+    */
+   public synchronized byte[] load(int id) {
+      if (id < 0 || id >= numIDs || fullOffsets[id] == -1) {
+         return new byte[0];
+      }
+      return materialize(log, fullOffsets[id], patchOffsets[id], numPatches[id]);
+   }
+
+   public void load(int id, byte[] array, int offset) {
+      byte[] data = load(id);
+      System.arraycopy(data, 0, array, offset, data.length);
+   }
+
+   public byte[] loadHeader(int size) {
+      byte[] data = load(0);
+      byte[] header = new byte[size];
+      System.arraycopy(data, 0, header, 0, Math.min(size, data.length));
+      return header;
+   }
+
+   /**
+    * Full record at fullOff with the patches applied
+    * @param src
+    * @param fullOff
+    * @param patches
+    * @param np
+    * @return
+    */
+   private byte[] materialize(byte[] src, int fullOff, int[] patches, int np) {
+      int size = IntUtils.readIntBE(src, fullOff + 5);
+      byte[] data = new byte[size];
+      System.arraycopy(src, fullOff + RECORD_HEADER_SIZE, data, 0, size);
+      for (int p = 0; p < np; p++) {
+         int offset = patches[p] + RECORD_HEADER_SIZE;
+         int numRuns = IntUtils.readIntBE(src, offset);
+         offset += 4;
+         for (int r = 0; r < numRuns; r++) {
+            int runOff = IntUtils.readIntBE(src, offset);
+            int runLen = IntUtils.readIntBE(src, offset + 4);
+            System.arraycopy(src, offset + 8, data, runOff, runLen);
+            offset += 8 + runLen;
+         }
+      }
+      return data;
+   }
+
+   public byte[] preload() {
+      return load(0);
+   }
+
+   private void resetIndex() {
+      fullOffsets = new int[4];
+      for (int i = 0; i < fullOffsets.length; i++) {
+         fullOffsets[i] = -1;
+      }
+      numPatches = new int[4];
+      chainBytes = new int[4];
+      patchOffsets = new int[4][];
+      numIDs = 0;
+      liveBytes = 0;
+   }
+
+   /**
+    * Compaction thread
+    */
+   public void run() {
+      try {
+         compact();
+      } finally {
+         synchronized (this) {
+            isCompacting = false;
+         }
+      }
+   }
+
+   public void save(byte[] memory, int offset, int len) {
+      save(memory, offset, len, 0);
+   }
+
+   /**
+    * Appends a patch when the block keeps its length and few bytes changed, a full record otherwise.
+    * <br>
+    * Nothing is appended when the block did not change.
+    */
+   public synchronized void save(byte[] memory, int offset, int len, int id) {
+      if (id < 0) {
+         throw new IllegalArgumentException("id " + id);
+      }
+      ensureIDs(id + 1);
+      if (fullOffsets[id] != -1 && numPatches[id] < MAX_PATCHES) {
+         byte[] cur = materialize(log, fullOffsets[id], patchOffsets[id], numPatches[id]);
+         if (cur.length == len) {
+            //first pass sizes the runs
+            int numRuns = 0;
+            int payload = 4;
+            int i = 0;
+            while (i < len) {
+               if (cur[i] != memory[offset + i]) {
+                  int end = runEnd(cur, memory, offset, len, i);
+                  numRuns++;
+                  payload += 8 + end - i;
+                  i = end;
+               } else {
+                  i++;
+               }
+            }
+            if (numRuns == 0) {
+               return;
+            }
+            if (payload < (len >> 1)) {
+               int rec = append(id, TYPE_PATCH, payload);
+               int w = rec + RECORD_HEADER_SIZE;
+               IntUtils.writeIntBE(log, w, numRuns);
+               w += 4;
+               i = 0;
+               while (i < len) {
+                  if (cur[i] != memory[offset + i]) {
+                     int end = runEnd(cur, memory, offset, len, i);
+                     IntUtils.writeIntBE(log, w, i);
+                     IntUtils.writeIntBE(log, w + 4, end - i);
+                     System.arraycopy(memory, offset + i, log, w + 8, end - i);
+                     w += 8 + end - i;
+                     i = end;
+                  } else {
+                     i++;
+                  }
+               }
+               indexRecord(id, TYPE_PATCH, rec, RECORD_HEADER_SIZE + payload);
+               checkCompaction();
+               return;
+            }
+         }
+      }
+      int rec = append(id, TYPE_FULL, len);
+      System.arraycopy(memory, offset, log, rec + RECORD_HEADER_SIZE, len);
+      indexRecord(id, TYPE_FULL, rec, RECORD_HEADER_SIZE + len);
+      checkCompaction();
+   }
+
+   /**
+    * End of the run of changed bytes starting at start. Unchanged gaps shorter than {@link LogSource#RUN_GAP} are included.
+    */
+   private int runEnd(byte[] cur, byte[] memory, int offset, int len, int start) {
+      int end = start + 1;
+      int same = 0;
+      for (int i = end; i < len && same < RUN_GAP; i++) {
+         if (cur[i] != memory[offset + i]) {
+            end = i + 1;
+            same = 0;
+         } else {
+            same++;
+         }
+      }
+      return end;
+   }
+
+   /**
+    *
+    * @param compactMinSize log length below which no compaction is started
+    * @param compactRatio percentage of garbage above which a compaction is started
+    */
+   public synchronized void setCompaction(int compactMinSize, int compactRatio) {
+      this.compactMinSize = compactMinSize;
+      this.compactRatio = compactRatio;
+   }
+
+   /**
+    * Copy of the log
+    * @return
+    */
+   public synchronized byte[] toByteArray() {
+      byte[] data = new byte[logLen];
+      System.arraycopy(log, 0, data, 0, logLen);
+      return data;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, "LogSource");
+      dc.appendVarWithSpace("id", id);
+      dc.appendVarWithSpace("logLen", logLen);
+      dc.appendVarWithSpace("liveBytes", liveBytes);
+      dc.appendVarWithSpace("bytesWritten", bytesWritten);
+      dc.appendVarWithSpace("numCompactions", numCompactions);
+      super.toString(dc.newLevel());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, "LogSource");
+      dc.appendVarWithSpace("logLen", logLen);
+      dc.appendVarWithSpace("liveBytes", liveBytes);
+      super.toString1Line(dc.sup1Line());
+   }
+   //#enddebug
+
+}
@@ -0,0 +1,316 @@
+/*
+ * (c) 2018-2020 Charles-Philip Bentley
+ * This code is licensed under MIT license (see LICENSE.txt for details)
+ */
+package pasa.cbentley.byteobjects.src4.sources;
+
+import pasa.cbentley.byteobjects.src4.core.ByteController;
+import pasa.cbentley.byteobjects.src4.core.ByteObjectManaged;
+import pasa.cbentley.byteobjects.src4.ctx.BOCtx;
+import pasa.cbentley.core.src4.logging.Dctx;
+import pasa.cbentley.core.src4.utils.IntUtils;
+
+/**
+ * {@link MemorySource} whose instance IDs are regions of a single byte array, the image.
+ * <br>
+ * <br>
+ * The image is typically the content of a file read or mapped in one go by the platform.
+ * Its layout is
+ * <li> 4 bytes : number of regions
+ * <li> 12 bytes per region : offset, length and capacity in the image
+ * <li> region data
+ * <br>
+ * <br>
+ * Opening the image only reads the region table. Nothing is copied.
+ * <br>
+ * {@link MappedSource#loadView(int)} gives the {@link ByteController} an enveloppe over the image itself.
+ * The enveloppe and its agents are copied on their first write, so the image stays as it was read.
+ * {@link MappedSource#load(int)} returns a copy.
+ * <br>
+ * <br>
+ * <b>Saving</b>
+ * <br>
+ * A block is written in place when it fits the capacity of its region and the region is not viewed.
+ * Otherwise a new region with some headroom is appended and the old one becomes garbage.
+ * Viewed regions are never overwritten, so the agents reading them stay valid.
+ * <br>
+ * <br>
+ * {@link MappedSource#toByteArray()} builds a compacted image to be written back.
+ *
+ * @author Charles Bentley
+ * @see ByteArraySource
+ */
+public class MappedSource extends MemorySource {
+
+   public static final int ENTRY_SIZE  = 12;
+
+   public static final int HEADER_SIZE = 4;
+
+   private int[]           caps;
+
+   /**
+    * Number of bytes of dead regions
+    */
+   private int             garbage;
+
+   private String          id;
+
+   private byte[]          image;
+
+   /**
+    * Number of bytes used in {@link MappedSource#image}
+    */
+   private int             imageLen;
+
+   /**
+    * True when the region was handed out by {@link MappedSource#loadView(int)}
+    */
+   private boolean[]       isViewed;
+
+   private int[]           lens;
+
+   private int             numRegions;
+
+   private int[]           offsets;
+
+   /**
+    * Empty source
+    * @param boc
+    * @param id
+    */
+   public MappedSource(BOCtx boc, String id) {
+      super(boc);
+      this.id = id;
+      flags = MS_FLAG_1_IDS | MS_FLAG_2_WRITABLE | MS_FLAG_4_CONCURRENT_LOAD;
+      image = new byte[0];
+      offsets = new int[1];
+      lens = new int[1];
+      caps = new int[1];
+      isViewed = new boolean[1];
+   }
+
+   /**
+    * Source over an image built by {@link MappedSource#toByteArray()}. The image is not copied.
+    * @param boc
+    * @param id
+    * @param image
+    * @throws IllegalArgumentException when the region table is not valid
+    */
+   public MappedSource(BOCtx boc, String id, byte[] image) {
+      this(boc, id);
+      if (image.length < HEADER_SIZE) {
+         throw new IllegalArgumentException("image too small " + image.length);
+      }
+      int num = IntUtils.readIntBE(image, 0);
+      int tableEnd = HEADER_SIZE + num * ENTRY_SIZE;
+      if (num < 0 || tableEnd > image.length) {
+         throw new IllegalArgumentException("bad number of regions " + num);
+      }
+      ensureRegions(num);
+      for (int i = 0; i < num; i++) {
+         int entry = HEADER_SIZE + i * ENTRY_SIZE;
+         int off = IntUtils.readIntBE(image, entry);
+         int len = IntUtils.readIntBE(image, entry + 4);
+         int cap = IntUtils.readIntBE(image, entry + 8);
+         if (len < 0 || len > cap || (cap != 0 && (off < tableEnd || off + cap > image.length))) {
+            throw new IllegalArgumentException("bad region " + i);
+         }
+         offsets[i] = off;
+         lens[i] = len;
+         caps[i] = cap;
+      }
+      this.image = image;
+      this.imageLen = image.length;
+      this.numRegions = num;
+   }
+
+   private void ensureRegions(int num) {
+      if (num > offsets.length) {
+         int size = Math.max(num, offsets.length << 1);
+         int[] no = new int[size];
+         System.arraycopy(offsets, 0, no, 0, numRegions);
+         offsets = no;
+         int[] nl = new int[size];
+         System.arraycopy(lens, 0, nl, 0, numRegions);
+         lens = nl;
+         int[] nc = new int[size];
+         System.arraycopy(caps, 0, nc, 0, numRegions);
+         caps = nc;
+         boolean[] nv = new boolean[size];
+         System.arraycopy(isViewed, 0, nv, 0, numRegions);
+         isViewed = nv;
+      }
+      if (num > numRegions) {
+         numRegions = num;
+      }
+   }
+
+   /**
+    * Number of bytes of the image used by regions that were replaced
+    * @return
+    */
+   public synchronized int getGarbage() {
+      return garbage;
+   }
+
+   public String getSrcID() {
+      return id;
+   }
+
+   /**
+    * IDs of the regions with data
+    */
+   public synchronized int[] getValidIDs() {
+      int count = 0;
+      for (int i = 0; i < numRegions; i++) {
+         if (lens[i] != 0) {
+            count++;
+         }
+      }
+      int[] ids = new int[count];
+      count = 0;
+      for (int i = 0; i < numRegions; i++) {
+         if (lens[i] != 0) {
+            ids[count++] = i;
+         }
+      }
+      return ids;
+   }
+
+   private boolean isRegion(int id) {
+      return id >= 0 && id < numRegions && lens[id] != 0;
+   }
+
+   public byte[] load() {
+      return load(0);
+   }
+
+   /**
+    * Copy of the region
+    * @param id
+    * @return empty array when there is no such region
+    */
+   public synchronized byte[] load(int id) {
+      if (!isRegion(id)) {
+         return new byte[0];
+      }
+      byte[] data = new byte[lens[id]];
+      System.arraycopy(image, offsets[id], data, 0, lens[id]);
+      return data;
+   }
+
+   public synchronized void load(int id, byte[] array, int offset) {
+      if (isRegion(id)) {
+         System.arraycopy(image, offsets[id], array, offset, lens[id]);
+      }
+   }
+
+   /**
+    * First bytes of region 0
+    */
+   public synchronized byte[] loadHeader(int size) {
+      byte[] data = new byte[size];
+      if (isRegion(0)) {
+         System.arraycopy(image, offsets[0], data, 0, Math.min(size, lens[0]));
+      }
+      return data;
+   }
+
+   /**
+    * Enveloppe over the image, without copy.
+    * <br>
+    * The region will not be overwritten by later saves. The {@link ByteController} never writes it either,
+    * agents of a view copy their bytes on their first write.
+    */
+   public synchronized ByteObjectManaged loadView(int id) {
+      if (!isRegion(id)) {
+         return null;
+      }
+      isViewed[id] = true;
+      return new ByteObjectManaged(boc, image, offsets[id]);
+   }
+
+   public byte[] preload() {
+      return load(0);
+   }
+
+   public void save(byte[] memory, int offset, int len) {
+      save(memory, offset, len, 0);
+   }
+
+   public synchronized void save(byte[] memory, int offset, int len, int id) {
+      if (id < 0) {
+         throw new IllegalArgumentException("id " + id);
+      }
+      ensureRegions(id + 1);
+      if (len <= caps[id] && !isViewed[id]) {
+         System.arraycopy(memory, offset, image, offsets[id], len);
+         lens[id] = len;
+         return;
+      }
+      garbage += caps[id];
+      //headroom so the next saves of a growing block are in place
+      int cap = len + (len >> 2);
+      if (imageLen + cap > image.length) {
+         int size = Math.max(imageLen + cap, image.length + (image.length >> 1));
+         //views keep the old array
+         byte[] ni = new byte[size];
+         System.arraycopy(image, 0, ni, 0, imageLen);
+         image = ni;
+      }
+      System.arraycopy(memory, offset, image, imageLen, len);
+      offsets[id] = imageLen;
+      lens[id] = len;
+      caps[id] = cap;
+      isViewed[id] = false;
+      imageLen += cap;
+   }
+
+   /**
+    * Compacted image with its region table. Capacities are reduced to the lengths.
+    * <br>
+    * The source keeps its current image.
+    * @return
+    */
+   public synchronized byte[] toByteArray() {
+      int tableEnd = HEADER_SIZE + numRegions * ENTRY_SIZE;
+      int total = tableEnd;
+      for (int i = 0; i < numRegions; i++) {
+         total += lens[i];
+      }
+      byte[] data = new byte[total];
+      IntUtils.writeIntBE(data, 0, numRegions);
+      int off = tableEnd;
+      for (int i = 0; i < numRegions; i++) {
+         int entry = HEADER_SIZE + i * ENTRY_SIZE;
+         int len = lens[i];
+         IntUtils.writeIntBE(data, entry, len == 0 ? 0 : off);
+         IntUtils.writeIntBE(data, entry + 4, len);
+         IntUtils.writeIntBE(data, entry + 8, len);
+         if (len != 0) {
+            System.arraycopy(image, offsets[i], data, off, len);
+            off += len;
+         }
+      }
+      return data;
+   }
+
+   //#mdebug
+   public void toString(Dctx dc) {
+      dc.root(this, "MappedSource");
+      dc.appendVarWithSpace("id", id);
+      dc.appendVarWithSpace("numRegions", numRegions);
+      dc.appendVarWithSpace("imageLen", imageLen);
+      dc.appendVarWithSpace("garbage", garbage);
+      super.toString(dc.newLevel());
+   }
+
+   public void toString1Line(Dctx dc) {
+      dc.root1Line(this, "MappedSource");
+      dc.appendVarWithSpace("numRegions", numRegions);
+      dc.appendVarWithSpace("imageLen", imageLen);
+      super.toString1Line(dc.sup1Line());
+   }
+   //#enddebug
+
+}
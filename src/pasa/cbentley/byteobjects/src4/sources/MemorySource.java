@@ -135,6 +135,20 @@ public abstract class MemorySource implements IMemorySource, ITechMemorySource,
     */
    public abstract byte[] load(int id);
 
+   /**
+    * {@link IBOByteControler} enveloppe of the block id directly over the memory of the source, without copy.
+    * <br>
+    * <br>
+    * Returns null by default. The {@link ByteController} then wraps the bytes of {@link MemorySource#load(int)}.
+    * <br>
+    * The memory is only read. Agents over it copy their bytes before being written.
+    * @param id
+    * @return null when the source does not share its memory
+    */
+   public ByteObjectManaged loadView(int id) {
+      return null;
+   }
+
    /**
     * Write loaded data of id into data at offset. creates a new array if too small.
     * <br>